@@ -1,10 +1,24 @@
 package agh.project.oot;
 
+import agh.project.oot.blob.BlobStore;
+import agh.project.oot.blob.ThumbnailVolumeStore;
 import agh.project.oot.controller.ThumbnailController;
+import agh.project.oot.model.Image;
+import agh.project.oot.model.Thumbnail;
+import agh.project.oot.repository.BatchWriter;
 import agh.project.oot.repository.FolderRepository;
 import agh.project.oot.repository.ThumbnailRepository;
+import agh.project.oot.repository.TimedConnectionFactory;
 import agh.project.oot.service.*;
+import agh.project.oot.thumbnails.ImageDecoder;
+import agh.project.oot.thumbnails.ImageValidator;
 import agh.project.oot.thumbnails.ThumbnailConverter;
+import agh.project.oot.thumbnails.ThumbnailRenderScheduler;
+import agh.project.oot.thumbnails.engine.ImageIoEngine;
+import agh.project.oot.thumbnails.engine.Java2DEngine;
+import agh.project.oot.thumbnails.engine.ThumbnailEngine;
+import agh.project.oot.thumbnails.engine.ThumbnailatorEngine;
+import agh.project.oot.thumbnails.engine.VectorEngine;
 import agh.project.oot.util.ImageProcessor;
 import agh.project.oot.util.MessageParser;
 import agh.project.oot.util.ZipResolver;
@@ -12,14 +26,24 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
+import java.time.Duration;
+import java.util.List;
+
 @Configuration
 @EnableScheduling
 public class OotConfiguration {
@@ -29,16 +53,84 @@ public class OotConfiguration {
         return new ThumbnailController(messageService, sessionManager, messageSender, messageParser);
     }
 
+    @Bean(destroyMethod = "dispose")
+    public TimedConnectionFactory connectionFactory(@Value("${spring.r2dbc.url}") String url,
+                                                    @Value("${spring.r2dbc.username}") String username,
+                                                    @Value("${spring.r2dbc.password}") String password,
+                                                    @Value("${database.pool.initialSize}") int initialSize,
+                                                    @Value("${database.pool.maxSize}") int maxSize,
+                                                    @Value("${database.pool.acquireTimeout}") long acquireTimeout,
+                                                    @Value("${database.pool.maxIdleTime}") long maxIdleTime,
+                                                    @Value("${database.pool.validationQuery}") String validationQuery,
+                                                    MeterRegistry meterRegistry) {
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        ConnectionPool connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .name("oot")
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxAcquireTime(Duration.ofMillis(acquireTimeout))
+                .maxIdleTime(Duration.ofMillis(maxIdleTime))
+                .backgroundEvictionInterval(Duration.ofMillis(maxIdleTime / 2))
+                .validationQuery(validationQuery)
+                .build());
+        return new TimedConnectionFactory(connectionPool, meterRegistry);
+    }
+
     @Bean
     public ImageSink imageSink(@Value("${configuration.backpressureBuffer}") int buffer) {
         return new ImageSink(buffer);
     }
 
+    @Bean
+    public ThumbnailEngine thumbnailEngine(@Value("${converter.engine}") String engine, ImageDecoder imageDecoder) {
+        return switch (engine) {
+            case "thumbnailator" -> new ThumbnailatorEngine(imageDecoder);
+            case "java2d" -> new Java2DEngine(imageDecoder);
+            case "imageio" -> new ImageIoEngine(imageDecoder);
+            case "vector" -> new VectorEngine(imageDecoder);
+            default -> throw new IllegalArgumentException("Unknown thumbnail engine: " + engine);
+        };
+    }
+
+    @Bean
+    public BatchWriter<Image> imageBatchWriter(DatabaseClient databaseClient,
+                                               @Value("${database.batchSize}") int batchSize,
+                                               @Value("${database.flushInterval}") long flushInterval) {
+        return new BatchWriter<>("images", List.of(
+                new BatchWriter.Column<>("data_hash", String.class, Image::getDataHash),
+                new BatchWriter.Column<>("size", Long.class, Image::getSize),
+                new BatchWriter.Column<>("image_order", Long.class, Image::getImageOrder),
+                new BatchWriter.Column<>("folder_id", Long.class, Image::getFolderId),
+                new BatchWriter.Column<>("placeholder", String.class, Image::getPlaceholder)
+        ), Image::setId, databaseClient, batchSize, Duration.ofMillis(flushInterval));
+    }
+
+    @Bean
+    public BatchWriter<Thumbnail> thumbnailBatchWriter(DatabaseClient databaseClient,
+                                                       @Value("${database.batchSize}") int batchSize,
+                                                       @Value("${database.flushInterval}") long flushInterval) {
+        return new BatchWriter<>("thumbnails", List.of(
+                new BatchWriter.Column<>("data_hash", String.class, Thumbnail::getDataHash),
+                new BatchWriter.Column<>("size", Long.class, Thumbnail::getSize),
+                new BatchWriter.Column<>("image_id", Long.class, Thumbnail::getImageId),
+                new BatchWriter.Column<>("folder_id", Long.class, Thumbnail::getFolderId),
+                new BatchWriter.Column<>("type", String.class, thumbnail -> thumbnail.getType().name()),
+                new BatchWriter.Column<>("thumbnail_order", Long.class, Thumbnail::getThumbnailOrder)
+        ), Thumbnail::setId, databaseClient, batchSize, Duration.ofMillis(flushInterval));
+    }
+
     @Bean
     public ThumbnailService thumbnailService(ThumbnailConverter thumbnailConverter,
                                              ImageService imageService,
-                                             ThumbnailRepository thumbnailRepository) {
-        return new ThumbnailService(thumbnailConverter, imageService, thumbnailRepository);
+                                             ThumbnailRepository thumbnailRepository,
+                                             BatchWriter<Thumbnail> thumbnailBatchWriter,
+                                             BlobStore blobStore,
+                                             ThumbnailVolumeStore thumbnailVolumeStore,
+                                             ThumbnailRenderScheduler renderScheduler) {
+        return new ThumbnailService(thumbnailConverter, imageService, thumbnailRepository, thumbnailBatchWriter, blobStore, thumbnailVolumeStore, renderScheduler);
     }
 
     @Bean
@@ -66,8 +158,8 @@ public class OotConfiguration {
     }
 
     @Bean
-    public ZipResolver zipResolver(FolderService folderService) {
-        return new ZipResolver(folderService);
+    public ZipResolver zipResolver(FolderService folderService, ImageValidator imageValidator) {
+        return new ZipResolver(folderService, imageValidator);
     }
 
     @Bean
@@ -76,8 +168,9 @@ public class OotConfiguration {
                                          ImageService imageService,
                                          ImageOrderService imageOrderService,
                                          SessionRepository sessionManager,
-                                         MessageSender messageSender) {
-        return new ImageProcessor(imageSink, thumbnailService, imageService, imageOrderService, sessionManager, messageSender);
+                                         MessageSender messageSender,
+                                         ThumbnailRenderScheduler renderScheduler) {
+        return new ImageProcessor(imageSink, thumbnailService, imageService, imageOrderService, sessionManager, messageSender, renderScheduler);
     }
 
     @Bean
@@ -104,9 +197,10 @@ public class OotConfiguration {
                                          ImageOrderService imageOrderService,
                                          ImageProcessor imageProcessor,
                                          MessageSender messageSender,
-                                         ZipResolver zipResolver) {
+                                         ZipResolver zipResolver,
+                                         ImageValidator imageValidator) {
         return new MessageService(thumbnailService, imageService,
-                sessionRepository, folderService, imageOrderService, imageProcessor, messageSender, zipResolver);
+                sessionRepository, folderService, imageOrderService, imageProcessor, messageSender, zipResolver, imageValidator);
     }
 
     @Bean
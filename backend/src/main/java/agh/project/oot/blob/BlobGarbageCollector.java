@@ -0,0 +1,64 @@
+package agh.project.oot.blob;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class BlobGarbageCollector {
+    private final DatabaseClient databaseClient;
+    private final BlobStore blobStore;
+    private final Duration gracePeriod;
+    private final int batchSize;
+
+    public BlobGarbageCollector(DatabaseClient databaseClient,
+                                BlobStore blobStore,
+                                @Value("${blobStore.gcGracePeriod}") long gracePeriodMillis,
+                                @Value("${blobStore.gcBatchSize}") int batchSize) {
+        this.databaseClient = databaseClient;
+        this.blobStore = blobStore;
+        this.gracePeriod = Duration.ofMillis(gracePeriodMillis);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${blobStore.gcInterval}", initialDelayString = "${blobStore.gcInterval}")
+    public Mono<Void> collect() {
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        return blobStore.findModifiedBefore(cutoff)
+                .buffer(batchSize)
+                .concatMap(candidates -> findReferencedHashes(candidates)
+                        .flatMapMany(referenced -> Flux.fromIterable(candidates)
+                                .filter(hash -> !referenced.contains(hash))))
+                // the store re-checks the modification time under the same lock as put, so a blob
+                // deduplicated by an upload after it was listed is touched and kept
+                .concatMap(hash -> blobStore.deleteIfModifiedBefore(hash, cutoff))
+                .filter(deleted -> deleted)
+                .count()
+                .filter(deleted -> deleted > 0)
+                .doOnNext(deleted -> log.info("Deleted {} unreferenced blobs", deleted))
+                .doOnError(error -> log.error("Blob garbage collection failed", error))
+                .then();
+    }
+
+    private Mono<Set<String>> findReferencedHashes(List<String> candidates) {
+        return databaseClient.sql("""
+                        SELECT data_hash FROM images WHERE data_hash = ANY(CAST(:hashes AS CHAR(64)[]))
+                        UNION
+                        SELECT data_hash FROM thumbnails WHERE data_hash = ANY(CAST(:hashes AS CHAR(64)[]))""")
+                .bind("hashes", candidates.toArray(String[]::new))
+                .map(row -> row.get("data_hash", String.class))
+                .all()
+                .collect(Collectors.toSet());
+    }
+}
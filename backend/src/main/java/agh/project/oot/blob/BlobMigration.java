@@ -0,0 +1,72 @@
+package agh.project.oot.blob;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.List;
+
+@Slf4j
+@Component
+public class BlobMigration implements ApplicationRunner {
+    private static final List<String> TABLES = List.of("images", "thumbnails");
+
+    private final DatabaseClient databaseClient;
+    private final BlobStore blobStore;
+    private final int batchSize;
+
+    public BlobMigration(DatabaseClient databaseClient,
+                         BlobStore blobStore,
+                         @Value("${blobStore.migrationBatchSize}") int batchSize) {
+        this.databaseClient = databaseClient;
+        this.blobStore = blobStore;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrate().block();
+    }
+
+    public Mono<Void> migrate() {
+        return Flux.fromIterable(TABLES)
+                .concatMap(this::migrateTable)
+                .then();
+    }
+
+    private Mono<Void> migrateTable(String table) {
+        return Mono.defer(() -> migrateBatch(table))
+                .repeat()
+                .takeUntil(migrated -> migrated < batchSize)
+                .reduce(0L, Long::sum)
+                .filter(migrated -> migrated > 0)
+                .doOnNext(migrated -> log.info("Moved {} rows of {} to the blob store", migrated, table))
+                .then();
+    }
+
+    private Mono<Long> migrateBatch(String table) {
+        return databaseClient.sql("SELECT id, data FROM " + table + " WHERE data_hash IS NULL AND data IS NOT NULL ORDER BY id LIMIT :limit")
+                .bind("limit", batchSize)
+                .map(row -> Tuples.of(row.get("id", Long.class), row.get("data", byte[].class)))
+                .all()
+                .concatMap(row -> moveToBlobStore(table, row))
+                .count();
+    }
+
+    private Mono<Long> moveToBlobStore(String table, Tuple2<Long, byte[]> row) {
+        return blobStore.put(row.getT2())
+                .flatMap(hash -> databaseClient.sql("UPDATE " + table + " SET data_hash = :hash, size = :size, data = NULL WHERE id = :id")
+                        .bind("hash", hash)
+                        .bind("size", (long) row.getT2().length)
+                        .bind("id", row.getT1())
+                        .fetch()
+                        .rowsUpdated());
+    }
+}
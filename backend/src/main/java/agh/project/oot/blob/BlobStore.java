@@ -0,0 +1,18 @@
+package agh.project.oot.blob;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface BlobStore {
+    Mono<String> put(byte[] data);
+
+    Mono<byte[]> get(String hash);
+
+    Mono<Void> delete(String hash);
+
+    Mono<Boolean> deleteIfModifiedBefore(String hash, Instant instant);
+
+    Flux<String> findModifiedBefore(Instant instant);
+}
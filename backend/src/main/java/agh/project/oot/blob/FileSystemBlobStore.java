@@ -0,0 +1,153 @@
+package agh.project.oot.blob;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+public class FileSystemBlobStore implements BlobStore {
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String TEMP_DIRECTORY = "tmp";
+    private static final int SHARD_DEPTH = 2;
+    private static final int LOCK_STRIPES = 256;
+
+    private final Path root;
+    // put and deleteIfModifiedBefore of the same hash are serialized so a dedup hit cannot race a GC delete
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public FileSystemBlobStore(@Value("${blobStore.path}") String root) {
+        this.root = Path.of(root);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public Mono<String> put(byte[] data) {
+        return Mono.fromCallable(() -> {
+            String hash = hash(data);
+            Path target = pathOf(hash);
+            synchronized (lockOf(hash)) {
+                if (Files.exists(target)) {
+                    Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                    return hash;
+                }
+            }
+
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(Files.createDirectories(root.resolve(TEMP_DIRECTORY)), hash, null);
+            try {
+                Files.write(temp, data);
+                synchronized (lockOf(hash)) {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return hash;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<byte[]> get(String hash) {
+        return Mono.fromCallable(() -> {
+            try (FileChannel channel = FileChannel.open(pathOf(hash), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Blob " + hash + " is too large to load: " + size + " bytes");
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of blob " + hash);
+                    }
+                }
+                return buffer.array();
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> delete(String hash) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(pathOf(hash)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    @Override
+    public Mono<Boolean> deleteIfModifiedBefore(String hash, Instant instant) {
+        return Mono.fromCallable(() -> {
+                    Path path = pathOf(hash);
+                    synchronized (lockOf(hash)) {
+                        return Files.exists(path) && isModifiedBefore(path, instant) && Files.deleteIfExists(path);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<String> findModifiedBefore(Instant instant) {
+        return Flux.defer(() -> {
+                    if (!Files.isDirectory(root)) {
+                        return Flux.empty();
+                    }
+                    return Flux.using(() -> Files.walk(root, SHARD_DEPTH + 1), Flux::fromStream, Stream::close)
+                            .filter(Files::isRegularFile)
+                            .filter(path -> HASH_PATTERN.matcher(path.getFileName().toString()).matches())
+                            .filter(path -> isModifiedBefore(path, instant))
+                            .map(path -> path.getFileName().toString());
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private boolean isModifiedBefore(Path path, Instant instant) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isBefore(instant);
+        } catch (IOException error) {
+            log.warn("Unable to read modification time of blob {}", path, error);
+            return false;
+        }
+    }
+
+    private Object lockOf(String hash) {
+        return locks[Integer.parseInt(hash.substring(0, 2), 16) % LOCK_STRIPES];
+    }
+
+    private Path pathOf(String hash) {
+        if (!HASH_PATTERN.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid blob hash: " + hash);
+        }
+        Path path = root;
+        for (int level = 0; level < SHARD_DEPTH; level++) {
+            path = path.resolve(hash.substring(level * 2, level * 2 + 2));
+        }
+        return path.resolve(hash);
+    }
+
+    static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException("SHA-256 is not available", error);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package agh.project.oot.blob;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.regex.Pattern;
+
+@Slf4j
+class ThumbnailVolume implements Closeable {
+    static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+    // magic + generation, written at the start of both files so a data file is never read with another index
+    static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int DATA_MAGIC = 0x54564454;
+    private static final int INDEX_MAGIC = 0x54564958;
+    private static final int TOMBSTONE = -1;
+    private static final String DATA_EXTENSION = ".dat";
+    private static final String INDEX_EXTENSION = ".idx";
+    private static final String MANIFEST_EXTENSION = ".volume";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final String name;
+    private final Path manifestPath;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private final Object appendLock = new Object();
+
+    private FileChannel data;
+    private FileChannel index;
+    private long generation;
+    private long writePosition;
+
+    private record Entry(long offset, int length) {
+    }
+
+    ThumbnailVolume(Path directory, String name) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.name = name;
+        this.manifestPath = directory.resolve(name + MANIFEST_EXTENSION);
+        open();
+    }
+
+    Optional<byte[]> read(long id) throws IOException {
+        Lock lock = compactionLock.readLock();
+        if (!lock.tryLock()) {
+            return Optional.empty();
+        }
+        try {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+            while (buffer.hasRemaining()) {
+                if (data.read(buffer, entry.offset() + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of volume " + dataPath(generation) + " at thumbnail " + id);
+                }
+            }
+            return Optional.of(buffer.array());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void append(long id, byte[] bytes) throws IOException {
+        Lock lock = compactionLock.readLock();
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            synchronized (appendLock) {
+                if (entries.containsKey(id)) {
+                    return;
+                }
+                long offset = writePosition;
+                writeFully(data, ByteBuffer.wrap(bytes), offset);
+                writePosition += bytes.length;
+                writeIndexEntry(index, id, offset, bytes.length);
+                entries.put(id, new Entry(offset, bytes.length));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void delete(long id) throws IOException {
+        Lock lock = compactionLock.readLock();
+        lock.lock();
+        try {
+            synchronized (appendLock) {
+                if (entries.remove(id) != null) {
+                    writeIndexEntry(index, id, 0, TOMBSTONE);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getTotalBytes() {
+        return writePosition - HEADER_SIZE;
+    }
+
+    long getLiveBytes(LongPredicate isLive) {
+        return entries.entrySet().stream()
+                .filter(entry -> isLive.test(entry.getKey()))
+                .mapToLong(entry -> entry.getValue().length())
+                .sum();
+    }
+
+    int getEntryCount() {
+        return entries.size();
+    }
+
+    long compact(LongPredicate isLive) throws IOException {
+        Lock lock = compactionLock.writeLock();
+        lock.lock();
+        try {
+            long before = writePosition;
+            long next = generation + 1;
+            Path compactedDataPath = dataPath(next);
+            Path compactedIndexPath = indexPath(next);
+            try {
+                try (FileChannel compactedData = FileChannel.open(compactedDataPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                     FileChannel compactedIndex = FileChannel.open(compactedIndexPath, StandardOpenOption.CREATE,
+                             StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    writeHeader(compactedData, DATA_MAGIC, next);
+                    writeHeader(compactedIndex, INDEX_MAGIC, next);
+                    long position = HEADER_SIZE;
+                    for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+                        if (!isLive.test(entry.getKey())) {
+                            continue;
+                        }
+                        Entry current = entry.getValue();
+                        long copied = 0;
+                        while (copied < current.length()) {
+                            copied += data.transferTo(current.offset() + copied, current.length() - copied, compactedData);
+                        }
+                        writeIndexEntry(compactedIndex, entry.getKey(), position, current.length());
+                        position += current.length();
+                    }
+                    compactedData.force(true);
+                    compactedIndex.force(true);
+                }
+                // the manifest switch is the single atomic step, a crash before it keeps the previous pair
+                writeManifest(next);
+            } catch (IOException | RuntimeException error) {
+                Files.deleteIfExists(compactedDataPath);
+                Files.deleteIfExists(compactedIndexPath);
+                throw error;
+            }
+
+            close();
+            open();
+            return before - writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (FileChannel ignoredData = data; FileChannel ignoredIndex = index) {
+            entries.clear();
+        }
+    }
+
+    private void open() throws IOException {
+        generation = readManifest();
+        if (!isValidPair(generation)) {
+            if (generation > 0) {
+                log.warn("Discarding thumbnail volume {} generation {}, its data and index files do not match", name, generation);
+            }
+            generation++;
+            createPair(generation);
+            writeManifest(generation);
+        }
+        deleteOtherGenerations(generation);
+
+        data = FileChannel.open(dataPath(generation), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexPath(generation), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writePosition = data.size();
+
+        long indexSize = index.size() - (index.size() - HEADER_SIZE) % INDEX_ENTRY_SIZE;
+        if (indexSize != index.size()) {
+            log.warn("Truncating partial entry at the end of {}", indexPath(generation));
+            index.truncate(indexSize);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE * 1024);
+        long position = HEADER_SIZE;
+        while (position < indexSize) {
+            buffer.clear();
+            int read = index.read(buffer, position);
+            buffer.flip();
+            buffer.limit(read - read % INDEX_ENTRY_SIZE);
+            while (buffer.hasRemaining()) {
+                long id = buffer.getLong();
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                if (length == TOMBSTONE) {
+                    entries.remove(id);
+                } else if (offset >= HEADER_SIZE && offset + length <= writePosition) {
+                    entries.put(id, new Entry(offset, length));
+                }
+            }
+            position += buffer.limit();
+        }
+        index.position(indexSize);
+        log.info("Opened thumbnail volume {} generation {} with {} entries", name, generation, entries.size());
+    }
+
+    private boolean isValidPair(long generation) throws IOException {
+        return generation > 0
+                && hasHeader(dataPath(generation), DATA_MAGIC, generation)
+                && hasHeader(indexPath(generation), INDEX_MAGIC, generation);
+    }
+
+    private boolean hasHeader(Path path, int magic, long generation) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            header.flip();
+            return header.getInt() == magic && header.getLong() == generation;
+        }
+    }
+
+    private void createPair(long generation) throws IOException {
+        try (FileChannel newData = FileChannel.open(dataPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel newIndex = FileChannel.open(indexPath(generation), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(newData, DATA_MAGIC, generation);
+            writeHeader(newIndex, INDEX_MAGIC, generation);
+            newData.force(true);
+            newIndex.force(true);
+        }
+    }
+
+    private long readManifest() throws IOException {
+        if (!Files.exists(manifestPath)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(manifestPath, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException error) {
+            log.warn("Ignoring unreadable manifest {}", manifestPath);
+            return 0;
+        }
+    }
+
+    private void writeManifest(long generation) throws IOException {
+        Path temp = manifestPath.resolveSibling(manifestPath.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(Long.toString(generation).getBytes(StandardCharsets.US_ASCII)), 0);
+            channel.force(true);
+        }
+        Files.move(temp, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteOtherGenerations(long generation) throws IOException {
+        String current = name + "-" + generation + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, name + "*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                boolean volumeFile = fileName.endsWith(DATA_EXTENSION) || fileName.endsWith(INDEX_EXTENSION);
+                if (volumeFile && isVolumeFileOf(fileName) && !fileName.startsWith(current)) {
+                    log.info("Deleting stale thumbnail volume file {}", file);
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private boolean isVolumeFileOf(String fileName) {
+        String stem = fileName.substring(0, fileName.lastIndexOf('.'));
+        return stem.equals(name) || stem.matches(Pattern.quote(name) + "-\\d+");
+    }
+
+    private Path dataPath(long generation) {
+        return directory.resolve(name + "-" + generation + DATA_EXTENSION);
+    }
+
+    private Path indexPath(long generation) {
+        return directory.resolve(name + "-" + generation + INDEX_EXTENSION);
+    }
+
+    private static void writeHeader(FileChannel channel, int magic, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(magic)
+                .putLong(generation)
+                .flip();
+        writeFully(channel, header, 0);
+        channel.position(HEADER_SIZE);
+    }
+
+    private static void writeIndexEntry(FileChannel channel, long id, long offset, int length) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE)
+                .putLong(id)
+                .putLong(offset)
+                .putInt(length)
+                .flip();
+        while (entry.hasRemaining()) {
+            channel.write(entry);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
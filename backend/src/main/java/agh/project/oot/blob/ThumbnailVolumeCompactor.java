@@ -0,0 +1,55 @@
+package agh.project.oot.blob;
+
+import agh.project.oot.model.ThumbnailType;
+import agh.project.oot.repository.ThumbnailRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Slf4j
+@Component
+public class ThumbnailVolumeCompactor {
+    private final ThumbnailRepository thumbnailRepository;
+    private final ThumbnailVolumeStore thumbnailVolumeStore;
+    private final double compactionThreshold;
+
+    public ThumbnailVolumeCompactor(ThumbnailRepository thumbnailRepository,
+                                    ThumbnailVolumeStore thumbnailVolumeStore,
+                                    @Value("${thumbnailVolume.compactionThreshold}") double compactionThreshold) {
+        this.thumbnailRepository = thumbnailRepository;
+        this.thumbnailVolumeStore = thumbnailVolumeStore;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Scheduled(fixedDelayString = "${thumbnailVolume.compactionInterval}", initialDelayString = "${thumbnailVolume.compactionInterval}")
+    public Mono<Void> compact() {
+        return Flux.fromArray(ThumbnailType.values())
+                .concatMap(type -> thumbnailRepository.findIdsByType(type)
+                        .collect(HashSet<Long>::new, Set::add)
+                        .publishOn(Schedulers.boundedElastic())
+                        .doOnNext(liveIds -> compact(type, liveIds)))
+                .doOnError(error -> log.error("Thumbnail volume compaction failed", error))
+                .then();
+    }
+
+    private void compact(ThumbnailType type, Set<Long> liveIds) {
+        try {
+            long totalBytes = thumbnailVolumeStore.getTotalBytes(type);
+            long deadBytes = totalBytes - thumbnailVolumeStore.getLiveBytes(type, liveIds::contains);
+            if (totalBytes == 0 || (double) deadBytes / totalBytes < compactionThreshold) {
+                return;
+            }
+            long reclaimed = thumbnailVolumeStore.compact(type, liveIds::contains);
+            log.info("Compacted the {} thumbnail volume, reclaimed {} bytes", type, reclaimed);
+        } catch (Exception error) {
+            log.error("Unable to compact the {} thumbnail volume", type, error);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package agh.project.oot.blob;
+
+import agh.project.oot.model.ThumbnailType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+@Slf4j
+@Component
+public class ThumbnailVolumeStore implements DisposableBean {
+    private final Path directory;
+    private final Map<ThumbnailType, ThumbnailVolume> volumes = new EnumMap<>(ThumbnailType.class);
+
+    public ThumbnailVolumeStore(@Value("${thumbnailVolume.path}") String directory) {
+        this.directory = Path.of(directory);
+    }
+
+    public Mono<byte[]> read(ThumbnailType type, Long id) {
+        return Mono.fromCallable(() -> volumeOf(type).read(id).orElse(null))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    log.warn("Unable to read thumbnail {} from the {} volume", id, type, error);
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Void> write(ThumbnailType type, Long id, byte[] data) {
+        return Mono.fromRunnable(() -> {
+                    try {
+                        volumeOf(type).append(id, data);
+                    } catch (IOException error) {
+                        throw new UncheckedIOException(error);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    log.warn("Unable to write thumbnail {} to the {} volume", id, type, error);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    public Mono<Void> delete(ThumbnailType type, Long id) {
+        return Mono.fromRunnable(() -> {
+                    try {
+                        volumeOf(type).delete(id);
+                    } catch (IOException error) {
+                        throw new UncheckedIOException(error);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    public long getTotalBytes(ThumbnailType type) throws IOException {
+        return volumeOf(type).getTotalBytes();
+    }
+
+    public long getLiveBytes(ThumbnailType type, LongPredicate isLive) throws IOException {
+        return volumeOf(type).getLiveBytes(isLive);
+    }
+
+    public long compact(ThumbnailType type, LongPredicate isLive) throws IOException {
+        return volumeOf(type).compact(isLive);
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        for (ThumbnailVolume volume : volumes.values()) {
+            volume.close();
+        }
+        volumes.clear();
+    }
+
+    private synchronized ThumbnailVolume volumeOf(ThumbnailType type) throws IOException {
+        ThumbnailVolume volume = volumes.get(type);
+        if (volume == null) {
+            volume = new ThumbnailVolume(directory, type.name().toLowerCase());
+            volumes.put(type, volume);
+        }
+        return volume;
+    }
+}
@@ -56,8 +56,8 @@ public class ThumbnailController extends AbstractWebSocketHandler {
     private Mono<Void> processMessage(WebSocketSession session, TextMessage textMessage) {
         return messageParser.parseMessage(textMessage.getPayload())
                 .flatMap(message -> switch (message) {
-                    case UploadImageMessage uploadImageMessage -> messageService.handleUploadImages(uploadImageMessage);
-                    case UploadZipMessage uploadZipMessage -> messageService.handleUploadZip(uploadZipMessage);
+                    case UploadImageMessage uploadImageMessage -> messageService.handleUploadImages(session, uploadImageMessage);
+                    case UploadZipMessage uploadZipMessage -> messageService.handleUploadZip(session, uploadZipMessage);
                     case GetThumbnailsMessage getThumbnailsMessage -> setThumbnailTypeAndResponse(session, getThumbnailsMessage);
                     case GetImageMessage getImageMessage -> messageService.handleGetImage(session, getImageMessage);
                     case MoveImageMessage moveImageMessage -> messageService.handleMoveImage(session, moveImageMessage);
@@ -0,0 +1,317 @@
+package agh.project.oot.importer;
+
+import agh.project.oot.ImageSink;
+import agh.project.oot.blob.BlobStore;
+import agh.project.oot.service.FolderService;
+import agh.project.oot.service.FolderStatistics;
+import agh.project.oot.thumbnails.ImageValidator;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+@Slf4j
+@Component
+public class BulkImporter {
+    private static final Duration OVERFLOW_BACKOFF = Duration.ofMillis(10);
+    private static final String ZIP_EXTENSION = ".zip";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final BlobStore blobStore;
+    private final FolderService folderService;
+    private final FolderStatistics folderStatistics;
+    private final ImageValidator imageValidator;
+    private final ImageSink imageSink;
+    private final String source;
+    private final int batchSize;
+
+    public BulkImporter(DatabaseClient databaseClient,
+                        TransactionalOperator transactionalOperator,
+                        BlobStore blobStore,
+                        FolderService folderService,
+                        FolderStatistics folderStatistics,
+                        ImageValidator imageValidator,
+                        ImageSink imageSink,
+                        @Value("${import.source}") String source,
+                        @Value("${import.batchSize}") int batchSize) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.blobStore = blobStore;
+        this.folderService = folderService;
+        this.folderStatistics = folderStatistics;
+        this.imageValidator = imageValidator;
+        this.imageSink = imageSink;
+        this.source = source;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        if (source.isBlank()) {
+            return;
+        }
+        runImport(Path.of(source))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(
+                        unused -> {},
+                        error -> log.error("Bulk import of {} failed, it will resume from the last checkpoint", source, error)
+                );
+    }
+
+    public Mono<Void> runImport(Path source) {
+        return ImportCheckpoint.load(databaseClient, source)
+                .flatMap(checkpoint -> {
+                    if (checkpoint.getProcessed() > 0) {
+                        log.info("Resuming import of {} after {} entries", source, checkpoint.getProcessed());
+                    }
+                    ImportProgress progress = new ImportProgress(source);
+                    Map<String, Long> folderIds = new ConcurrentHashMap<>();
+
+                    return entries(source, checkpoint.getProcessed())
+                            .concatMap(entry -> store(entry, folderIds), 1)
+                            .buffer(batchSize)
+                            .concatMap(batch -> importBatch(batch, checkpoint)
+                                    .doOnNext(rows -> progress.record(batch.size(), rows)))
+                            .then(checkpoint.complete(databaseClient))
+                            .doOnSuccess(ignored -> progress.finish());
+                });
+    }
+
+    /**
+     * Validates an entry and moves its bytes to the blob store, so that batches only hold the rows to copy.
+     * Unsupported entries are kept as empty rows to be counted by the checkpoint.
+     */
+    private Mono<Optional<ImageCopyEncoder.Row>> store(ImportEntry entry, Map<String, Long> folderIds) {
+        if (!imageValidator.isSupported(entry.data())) {
+            log.warn("Skipping unsupported import entry: {}", entry.path());
+            return Mono.just(Optional.empty());
+        }
+        long size = entry.data().length;
+        return resolveFolder(entry.folderPath(), folderIds)
+                .zipWith(blobStore.put(entry.data()),
+                        (folderId, hash) -> Optional.of(new ImageCopyEncoder.Row(0, hash, size, folderId)));
+    }
+
+    /**
+     * The rows of a batch and the checkpoint covering it are committed together, so a crash never leaves
+     * imported rows behind a checkpoint that would import them again.
+     */
+    private Mono<List<ImageCopyEncoder.Row>> importBatch(List<Optional<ImageCopyEncoder.Row>> batch, ImportCheckpoint checkpoint) {
+        List<ImageCopyEncoder.Row> stored = batch.stream().flatMap(Optional::stream).toList();
+        Mono<List<ImageCopyEncoder.Row>> rowsWithIds = stored.isEmpty()
+                ? Mono.just(stored)
+                : reserveIds(stored.size()).map(ids -> withIds(stored, ids));
+        Set<Long> folderIds = stored.stream().map(ImageCopyEncoder.Row::folderId).collect(Collectors.toSet());
+        return folderStatistics.trackWrite(folderIds, rowsWithIds
+                .flatMap(rows -> copy(rows)
+                        .then(checkpoint.advance(databaseClient, batch.size()))
+                        .as(transactionalOperator::transactional)
+                        .thenReturn(rows))
+                .doOnNext(this::imported));
+    }
+
+    private Mono<List<Long>> reserveIds(int count) {
+        return databaseClient.sql("SELECT nextval(pg_get_serial_sequence('images', 'id')) AS id FROM generate_series(1, :count)")
+                .bind("count", count)
+                .map(row -> row.get("id", Long.class))
+                .all()
+                .collectList();
+    }
+
+    private List<ImageCopyEncoder.Row> withIds(List<ImageCopyEncoder.Row> rows, List<Long> ids) {
+        List<ImageCopyEncoder.Row> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            ImageCopyEncoder.Row row = rows.get(i);
+            result.add(new ImageCopyEncoder.Row(ids.get(i), row.dataHash(), row.size(), row.folderId()));
+        }
+        return result;
+    }
+
+    private Mono<Long> copy(List<ImageCopyEncoder.Row> rows) {
+        if (rows.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.inConnection(connection -> unwrap(connection)
+                .copyIn(ImageCopyEncoder.COPY_STATEMENT, Mono.fromSupplier(() -> ImageCopyEncoder.encode(rows))));
+    }
+
+    private void imported(List<ImageCopyEncoder.Row> rows) {
+        rows.forEach(row -> folderStatistics.added(row.folderId(), row.size()));
+        rows.forEach(row -> notifyPipeline(row.id()));
+    }
+
+    // back off outside the sink monitor so that uploads emitting to the same sink never wait behind the import
+    private void notifyPipeline(Long id) {
+        Sinks.EmitResult result = tryEmit(id);
+        while (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+            LockSupport.parkNanos(OVERFLOW_BACKOFF.toNanos());
+            result = tryEmit(id);
+        }
+        result.orThrow();
+    }
+
+    private Sinks.EmitResult tryEmit(Long id) {
+        synchronized (imageSink) {
+            return imageSink.getSink().tryEmitNext(id);
+        }
+    }
+
+    private Mono<Long> resolveFolder(List<String> folderPath, Map<String, Long> folderIds) {
+        Mono<Long> folderId = Mono.just(0L);
+        for (int depth = 1; depth <= folderPath.size(); depth++) {
+            String name = folderPath.get(depth - 1);
+            String key = String.join("/", folderPath.subList(0, depth));
+            folderId = folderId.flatMap(parentId -> {
+                Long cached = folderIds.get(key);
+                return cached != null
+                        ? Mono.just(cached)
+                        : folderService.createFolderIfNotExists(name, parentId)
+                                .doOnNext(id -> folderIds.put(key, id));
+            });
+        }
+        return folderId;
+    }
+
+    private Flux<ImportEntry> entries(Path source, long skip) {
+        return Files.isDirectory(source)
+                ? directoryEntries(source, skip)
+                : zipEntries(source, skip);
+    }
+
+    private Flux<ImportEntry> directoryEntries(Path root, long skip) {
+        return Flux.using(
+                () -> Files.walk(root),
+                files -> Flux.fromStream(files
+                                .filter(Files::isRegularFile)
+                                .map(path -> root.relativize(path).toString().replace(root.getFileSystem().getSeparator(), "/"))
+                                .sorted()
+                                .skip(skip))
+                        .map(path -> new ImportEntry(path, read(root.resolve(path)))),
+                Stream::close);
+    }
+
+    private Flux<ImportEntry> zipEntries(Path zip, long skip) {
+        if (!zip.getFileName().toString().toLowerCase().endsWith(ZIP_EXTENSION)) {
+            return Flux.error(new IllegalArgumentException("Import source must be a directory or a zip file: " + zip));
+        }
+        return Flux.using(
+                () -> new ZipInputStream(Files.newInputStream(zip)),
+                zis -> Flux.<ImportEntry, Long>generate(() -> 0L, (index, sink) -> {
+                    try {
+                        ZipEntry entry = nextFile(zis);
+                        while (entry != null && index < skip) {
+                            index++;
+                            entry = nextFile(zis);
+                        }
+                        if (entry == null) {
+                            sink.complete();
+                        } else {
+                            sink.next(new ImportEntry(entry.getName(), zis.readAllBytes()));
+                        }
+                    } catch (IOException error) {
+                        sink.error(error);
+                    }
+                    return index + 1;
+                }),
+                zis -> {
+                    try {
+                        zis.close();
+                    } catch (IOException error) {
+                        log.warn("Unable to close {}", zip, error);
+                    }
+                });
+    }
+
+    private static ZipEntry nextFile(ZipInputStream zis) throws IOException {
+        ZipEntry entry;
+        do {
+            entry = zis.getNextEntry();
+        } while (entry != null && entry.isDirectory());
+        return entry;
+    }
+
+    private static byte[] read(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private static PostgresqlConnection unwrap(Connection connection) {
+        Object current = connection;
+        while (!(current instanceof PostgresqlConnection) && current instanceof Wrapped<?> wrapped) {
+            current = wrapped.unwrap();
+        }
+        if (current instanceof PostgresqlConnection postgresqlConnection) {
+            return postgresqlConnection;
+        }
+        throw new IllegalStateException("Bulk import requires a PostgreSQL connection, got " + connection.getClass().getName());
+    }
+
+    private static class ImportProgress {
+        private final Path source;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private ImportProgress(Path source) {
+            this.source = source;
+        }
+
+        private void record(int entries, List<ImageCopyEncoder.Row> rows) {
+            processed.addAndGet(entries);
+            imported.addAndGet(rows.size());
+            bytes.addAndGet(rows.stream().mapToLong(ImageCopyEncoder.Row::size).sum());
+            log.info("Import of {}: {} images from {} entries, {} images/s, {} MB/s",
+                    source, imported.get(), processed.get(), String.format("%.1f", imagesPerSecond()), String.format("%.2f", megabytesPerSecond()));
+        }
+
+        private void finish() {
+            log.info("Finished import of {}: {} images from {} entries in {}s",
+                    source, imported.get(), processed.get(), Duration.ofNanos(System.nanoTime() - startNanos).toSeconds());
+        }
+
+        private double imagesPerSecond() {
+            return imported.get() / elapsedSeconds();
+        }
+
+        private double megabytesPerSecond() {
+            return bytes.get() / (1024.0 * 1024.0) / elapsedSeconds();
+        }
+
+        private double elapsedSeconds() {
+            return Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        }
+    }
+}
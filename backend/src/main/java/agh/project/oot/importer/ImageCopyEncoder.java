@@ -0,0 +1,45 @@
+package agh.project.oot.importer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class ImageCopyEncoder {
+    static final String COPY_STATEMENT = "COPY images (id, data_hash, size, folder_id) FROM STDIN WITH (FORMAT binary)";
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 4;
+    private static final short TRAILER = -1;
+
+    record Row(long id, String dataHash, long size, long folderId) {
+    }
+
+    static ByteBuf encode(List<Row> rows) {
+        ByteBuf buffer = Unpooled.buffer(SIGNATURE.length + 8 + rows.size() * 100 + 2);
+        buffer.writeBytes(SIGNATURE);
+        buffer.writeInt(0);
+        buffer.writeInt(0);
+
+        for (Row row : rows) {
+            buffer.writeShort(FIELD_COUNT);
+            writeInt4(buffer, row.id());
+            writeText(buffer, row.dataHash());
+            buffer.writeInt(Long.BYTES).writeLong(row.size());
+            writeInt4(buffer, row.folderId());
+        }
+
+        buffer.writeShort(TRAILER);
+        return buffer;
+    }
+
+    private static void writeInt4(ByteBuf buffer, long value) {
+        buffer.writeInt(Integer.BYTES).writeInt(Math.toIntExact(value));
+    }
+
+    private static void writeText(ByteBuf buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.writeInt(bytes.length).writeBytes(bytes);
+    }
+}
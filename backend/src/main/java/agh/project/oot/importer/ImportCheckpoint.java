@@ -0,0 +1,66 @@
+package agh.project.oot.importer;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Number of source entries already imported, stored in {@code backfill_checkpoints} so that it can be
+ * advanced in the same transaction as the rows it covers.
+ */
+public class ImportCheckpoint {
+    private static final String PREFIX = "import-";
+    private static final int NAME_HASH_LENGTH = 32;
+
+    private final String name;
+    private long processed;
+
+    private ImportCheckpoint(String name, long processed) {
+        this.name = name;
+        this.processed = processed;
+    }
+
+    public static Mono<ImportCheckpoint> load(DatabaseClient databaseClient, Path source) {
+        String name = nameOf(source);
+        return databaseClient.sql("SELECT last_id FROM backfill_checkpoints WHERE name = :name")
+                .bind("name", name)
+                .map(row -> row.get("last_id", Long.class))
+                .one()
+                .defaultIfEmpty(0L)
+                .map(processed -> new ImportCheckpoint(name, processed));
+    }
+
+    static String nameOf(Path source) {
+        String sourceName = source.toAbsolutePath().normalize().toString();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sourceName.getBytes(StandardCharsets.UTF_8));
+            return PREFIX + HexFormat.of().formatHex(digest).substring(0, NAME_HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public Mono<Void> advance(DatabaseClient databaseClient, long entries) {
+        long next = processed + entries;
+        return databaseClient.sql("INSERT INTO backfill_checkpoints (name, last_id) VALUES (:name, :processed) ON CONFLICT (name) DO UPDATE SET last_id = EXCLUDED.last_id")
+                .bind("name", name)
+                .bind("processed", next)
+                .then()
+                .doOnSuccess(ignored -> processed = next);
+    }
+
+    public Mono<Void> complete(DatabaseClient databaseClient) {
+        return databaseClient.sql("DELETE FROM backfill_checkpoints WHERE name = :name")
+                .bind("name", name)
+                .then();
+    }
+}
@@ -0,0 +1,11 @@
+package agh.project.oot.importer;
+
+import java.util.List;
+
+public record ImportEntry(String path, byte[] data) {
+
+    public List<String> folderPath() {
+        List<String> parts = List.of(path.split("/"));
+        return parts.subList(0, parts.size() - 1);
+    }
+}
@@ -2,6 +2,7 @@ package agh.project.oot.messages;
 
 import agh.project.oot.ConnectionStatus;
 import agh.project.oot.ResponseStatus;
+import agh.project.oot.model.PageCursor;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.domain.Pageable;
@@ -12,10 +13,16 @@ public final class GetNextPageMessage extends Message {
 
     private Pageable pageable;
     private Long folderId;
+    private PageCursor cursor;
 
     public GetNextPageMessage(Pageable pageable, Long folderId) {
+        this(pageable, folderId, null);
+    }
+
+    public GetNextPageMessage(Pageable pageable, Long folderId, PageCursor cursor) {
         super(ConnectionStatus.CONNECTED, ResponseStatus.OK, MessageType.GET_NEXT_PAGE);
         this.pageable = pageable;
         this.folderId = folderId;
+        this.cursor = cursor;
     }
 }
@@ -3,6 +3,7 @@ package agh.project.oot.messages;
 import agh.project.oot.ConnectionStatus;
 import agh.project.oot.ResponseStatus;
 import agh.project.oot.model.IconDto;
+import agh.project.oot.model.PageCursor;
 import agh.project.oot.model.ThumbnailType;
 import lombok.Getter;
 import lombok.Setter;
@@ -16,11 +17,17 @@ public final class GetThumbnailsMessage extends Message {
     private ThumbnailType thumbnailType;
     private Long folderId;
     private Pageable pageable;
+    private PageCursor cursor;
 
     public GetThumbnailsMessage(ThumbnailType thumbnailType, Pageable pageable, Long folderId) {
         this(thumbnailType, null, pageable, folderId);
     }
 
+    public GetThumbnailsMessage(ThumbnailType thumbnailType, Pageable pageable, Long folderId, PageCursor cursor) {
+        this(thumbnailType, null, pageable, folderId);
+        this.cursor = cursor;
+    }
+
     public GetThumbnailsMessage(ThumbnailType thumbnailType, List<IconDto> imagesData) {
         this(thumbnailType, imagesData, null, null);
     }
@@ -5,13 +5,21 @@ import agh.project.oot.ResponseStatus;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Getter
 @Setter
 public final class PlaceholderNumberMessage extends Message {
     private Long thumbnailsNumber;
+    private List<String> placeholders;
 
     public PlaceholderNumberMessage(Long thumbnailsNumber) {
         super(ConnectionStatus.CONNECTED, ResponseStatus.OK, MessageType.PLACEHOLDERS_NUMBER_RESPONSE);
         this.thumbnailsNumber = thumbnailsNumber;
     }
+
+    public PlaceholderNumberMessage(Long thumbnailsNumber, List<String> placeholders) {
+        this(thumbnailsNumber);
+        this.placeholders = placeholders;
+    }
 }
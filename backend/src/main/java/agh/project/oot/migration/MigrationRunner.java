@@ -0,0 +1,140 @@
+package agh.project.oot.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the schema migrations once all singletons exist, which is before the web server is started and
+ * before scheduled tasks and application runners, so no request ever sees an unmigrated schema.
+ */
+@Slf4j
+@Component
+public class MigrationRunner implements SmartInitializingSingleton {
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final long LOCK_KEY = 0x6f6f745f6d6967L;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ResourcePatternResolver resourceResolver = new PathMatchingResourcePatternResolver();
+    private final String location;
+
+    public MigrationRunner(DatabaseClient databaseClient,
+                           TransactionalOperator transactionalOperator,
+                           @Value("${migration.location}") String location) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.location = location;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            migrate(findMigrations()).block();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Mono<Void> migrate(List<Migration> migrations) {
+        return databaseClient.sql("""
+                        CREATE TABLE IF NOT EXISTS schema_migrations (
+                            version INT PRIMARY KEY,
+                            description VARCHAR(255) NOT NULL,
+                            checksum CHAR(64) NOT NULL,
+                            applied_at TIMESTAMP NOT NULL DEFAULT now()
+                        )""")
+                .then()
+                .thenMany(Flux.fromIterable(migrations))
+                .concatMap(this::apply)
+                .then();
+    }
+
+    List<Migration> findMigrations() throws IOException {
+        return Arrays.stream(resourceResolver.getResources(location + "/V*__*.sql"))
+                .map(MigrationRunner::toMigration)
+                .sorted(Comparator.comparingInt(Migration::version))
+                .toList();
+    }
+
+    private Mono<Void> apply(Migration migration) {
+        return databaseClient.sql("SELECT pg_advisory_xact_lock(:key)")
+                .bind("key", LOCK_KEY)
+                .then()
+                .then(databaseClient.sql("SELECT checksum FROM schema_migrations WHERE version = :version")
+                        .bind("version", migration.version())
+                        .map(row -> row.get("checksum", String.class))
+                        .one()
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty()))
+                .flatMap(appliedChecksum -> appliedChecksum.isPresent()
+                        ? verify(migration, appliedChecksum.get())
+                        : execute(migration))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<Void> verify(Migration migration, String appliedChecksum) {
+        if (!appliedChecksum.equals(migration.checksum())) {
+            return Mono.error(new IllegalStateException("Migration V" + migration.version()
+                    + " was changed after it had been applied"));
+        }
+        return Mono.empty();
+    }
+
+    private Mono<Void> execute(Migration migration) {
+        return databaseClient.sql(migration.script())
+                .then()
+                .then(databaseClient.sql("INSERT INTO schema_migrations (version, description, checksum) VALUES (:version, :description, :checksum)")
+                        .bind("version", migration.version())
+                        .bind("description", migration.description())
+                        .bind("checksum", migration.checksum())
+                        .then())
+                .doOnSuccess(ignored -> log.info("Applied migration V{} {}", migration.version(), migration.description()));
+    }
+
+    private static Migration toMigration(Resource resource) {
+        Matcher matcher = FILE_NAME.matcher(resource.getFilename());
+        if (!matcher.matches()) {
+            throw new IllegalStateException("Invalid migration file name: " + resource.getFilename());
+        }
+        try {
+            String script = resource.getContentAsString(StandardCharsets.UTF_8);
+            return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), script, checksum(script));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String checksum(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record Migration(int version, String description, String script, String checksum) {
+    }
+}
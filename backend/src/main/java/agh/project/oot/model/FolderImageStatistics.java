@@ -0,0 +1,4 @@
+package agh.project.oot.model;
+
+public record FolderImageStatistics(Long folderId, Long imageCount, Long totalSize) {
+}
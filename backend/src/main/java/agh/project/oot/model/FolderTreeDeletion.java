@@ -0,0 +1,4 @@
+package agh.project.oot.model;
+
+public record FolderTreeDeletion(Long[] folderIds, Long imageCount, Long[] thumbnailIds, String[] thumbnailTypes) {
+}
@@ -22,6 +22,10 @@ public class IconDto {
         return new IconDto(thumbnail.getId(), thumbnail.getData(), thumbnail.getThumbnailOrder());
     }
 
+    public static IconDto from(Thumbnail thumbnail, long position) {
+        return new IconDto(thumbnail.getId(), thumbnail.getData(), position);
+    }
+
     public static IconDto from(Image image) {
         return new IconDto(image.getId(), image.getData(), image.getImageOrder());
     }
@@ -4,6 +4,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -15,11 +16,15 @@ public class Image{
 
     @Id
     private Long id;
+    @Transient
     private byte[] data;
+    private String dataHash;
+    private Long size;
 
     @Column("image_order")
     private Long imageOrder;
     private Long folderId = 0L;
+    private String placeholder;
 
     public Image() {}
 
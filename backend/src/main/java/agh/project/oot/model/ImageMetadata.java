@@ -0,0 +1,4 @@
+package agh.project.oot.model;
+
+public record ImageMetadata(Long id, Long folderId, Long imageOrder, Long size) {
+}
@@ -0,0 +1,4 @@
+package agh.project.oot.model;
+
+public record MissingThumbnails(Long imageId, String[] types) {
+}
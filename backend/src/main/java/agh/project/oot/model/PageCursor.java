@@ -0,0 +1,11 @@
+package agh.project.oot.model;
+
+/**
+ * Last item of a gallery page, {@code order} is its thumbnail/image order and {@code id} the id of its image,
+ * so the same cursor continues both the thumbnail and the placeholder page.
+ */
+public record PageCursor(Long order, Long id) {
+    public static PageCursor from(Thumbnail thumbnail) {
+        return new PageCursor(thumbnail.getThumbnailOrder(), thumbnail.getImageId());
+    }
+}
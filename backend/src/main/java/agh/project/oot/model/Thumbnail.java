@@ -4,6 +4,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.relational.core.mapping.Table;
 
 @Setter
@@ -14,8 +15,12 @@ public class Thumbnail {
 
     @Id
     private Long id;
+    @Transient
     private byte[] data;
+    private String dataHash;
+    private Long size;
     private Long imageId;
+    private Long folderId;
     private ThumbnailType type;
     private Long thumbnailOrder;
 
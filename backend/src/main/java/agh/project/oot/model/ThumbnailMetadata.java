@@ -0,0 +1,4 @@
+package agh.project.oot.model;
+
+public record ThumbnailMetadata(Long id, Long imageId, ThumbnailType type, Long thumbnailOrder, Long size) {
+}
@@ -0,0 +1,124 @@
+package agh.project.oot.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class BatchWriter<T> implements DisposableBean {
+    private final String table;
+    private final List<Column<T>> columns;
+    private final BiConsumer<T, Long> idSetter;
+    private final DatabaseClient databaseClient;
+    private final Sinks.Many<PendingWrite<T>> sink = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable subscription;
+
+    public record Column<T>(String name, Class<?> type, Function<T, ?> value) {
+    }
+
+    private record PendingWrite<T>(T entity, Sinks.One<T> result) {
+    }
+
+    public BatchWriter(String table,
+                       List<Column<T>> columns,
+                       BiConsumer<T, Long> idSetter,
+                       DatabaseClient databaseClient,
+                       int batchSize,
+                       Duration flushInterval) {
+        this.table = table;
+        this.columns = columns;
+        this.idSetter = idSetter;
+        this.databaseClient = databaseClient;
+        // fair backpressure keeps the flush timer from overflowing while an insert is slow
+        this.subscription = sink.asFlux()
+                .bufferTimeout(batchSize, flushInterval, true)
+                .concatMap(this::insert)
+                .subscribe(null, error -> log.error("Batch writer for {} stopped", table, error));
+    }
+
+    public Mono<T> save(T entity) {
+        return Mono.defer(() -> {
+            PendingWrite<T> pendingWrite = new PendingWrite<>(entity, Sinks.one());
+            synchronized (sink) {
+                sink.emitNext(pendingWrite, Sinks.EmitFailureHandler.FAIL_FAST);
+            }
+            return pendingWrite.result().asMono();
+        });
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (sink) {
+            sink.tryEmitComplete();
+        }
+        subscription.dispose();
+    }
+
+    private Mono<Void> insert(List<PendingWrite<T>> batch) {
+        // built lazily so a failing column extractor fails only this batch instead of the whole pipeline
+        return Mono.defer(() -> bind(batch)
+                        .map(row -> row.get("id", Long.class))
+                        .all()
+                        .collectList())
+                .doOnNext(ids -> {
+                    if (ids.size() != batch.size()) {
+                        throw new IllegalStateException("Inserted " + ids.size() + " of " + batch.size() + " rows into " + table);
+                    }
+                    for (int row = 0; row < batch.size(); row++) {
+                        PendingWrite<T> pendingWrite = batch.get(row);
+                        idSetter.accept(pendingWrite.entity(), ids.get(row));
+                        pendingWrite.result().tryEmitValue(pendingWrite.entity());
+                    }
+                })
+                .doOnError(error -> {
+                    log.error("Error inserting a batch of {} rows into {}", batch.size(), table, error);
+                    batch.forEach(pendingWrite -> pendingWrite.result().tryEmitError(error));
+                })
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private DatabaseClient.GenericExecuteSpec bind(List<PendingWrite<T>> batch) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(insertStatement(batch.size()));
+        for (int row = 0; row < batch.size(); row++) {
+            T entity = batch.get(row).entity();
+            for (int column = 0; column < columns.size(); column++) {
+                Column<T> definition = columns.get(column);
+                Object value = definition.value().apply(entity);
+                String parameter = parameterName(row, column);
+                spec = value == null ? spec.bindNull(parameter, definition.type()) : spec.bind(parameter, value);
+            }
+        }
+        return spec;
+    }
+
+    private String insertStatement(int rows) {
+        String columnNames = columns.stream()
+                .map(Column::name)
+                .collect(Collectors.joining(", "));
+
+        StringBuilder statement = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (").append(columnNames).append(") VALUES ");
+        for (int row = 0; row < rows; row++) {
+            statement.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < columns.size(); column++) {
+                statement.append(column == 0 ? ":" : ", :").append(parameterName(row, column));
+            }
+            statement.append(")");
+        }
+        return statement.append(" RETURNING id").toString();
+    }
+
+    private static String parameterName(int row, int column) {
+        return "r" + row + "c" + column;
+    }
+}
@@ -1,6 +1,8 @@
 package agh.project.oot.repository;
 
 import agh.project.oot.model.Folder;
+import agh.project.oot.model.FolderTreeDeletion;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -10,4 +12,27 @@ import reactor.core.publisher.Mono;
 public interface FolderRepository extends ReactiveCrudRepository<Folder, Long> {
     Flux<Folder> findByParentId(Long parentId);
     Mono<Folder> findByNameAndParentId(String name, Long parentId);
+
+    @Query("""
+    WITH RECURSIVE subtree AS (
+        SELECT id FROM folders WHERE id = :folderId
+        UNION ALL
+        SELECT f.id FROM folders f JOIN subtree s ON f.parent_id = s.id
+    ),
+    deleted_thumbnails AS (
+        DELETE FROM thumbnails WHERE folder_id IN (SELECT id FROM subtree) RETURNING id, type
+    ),
+    deleted_images AS (
+        DELETE FROM images WHERE folder_id IN (SELECT id FROM subtree) RETURNING id
+    ),
+    deleted_folders AS (
+        DELETE FROM folders WHERE id IN (SELECT id FROM subtree) RETURNING id
+    )
+    SELECT
+        COALESCE((SELECT ARRAY_AGG(id::BIGINT) FROM deleted_folders), '{}') AS folder_ids,
+        (SELECT COUNT(*) FROM deleted_images) AS image_count,
+        COALESCE((SELECT ARRAY_AGG(id::BIGINT ORDER BY id) FROM deleted_thumbnails), '{}') AS thumbnail_ids,
+        COALESCE((SELECT ARRAY_AGG(type ORDER BY id) FROM deleted_thumbnails), '{}') AS thumbnail_types
+    """)
+    Mono<FolderTreeDeletion> deleteFolderTree(Long folderId);
 }
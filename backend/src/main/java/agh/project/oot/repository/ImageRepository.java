@@ -1,6 +1,8 @@
 package agh.project.oot.repository;
 
+import agh.project.oot.model.FolderImageStatistics;
 import agh.project.oot.model.Image;
+import agh.project.oot.model.ImageMetadata;
 import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
@@ -15,12 +17,72 @@ public interface ImageRepository extends ReactiveCrudRepository<Image, Long> {
     Mono<Integer> updateImageOrder(Long imageId, Long imageOrder);
 
     @Modifying
-    @Query("UPDATE images SET folder_id = :folderId WHERE id = :id")
-    Mono<Integer> updateFolderId(Long id, Long folderId);
+    @Query("""
+    WITH moved_thumbnails AS (
+        UPDATE thumbnails SET folder_id = :folderId WHERE image_id = :id
+    ),
+    previous AS (
+        SELECT id, folder_id, size FROM images WHERE id = :id FOR UPDATE
+    )
+    UPDATE images i SET folder_id = :folderId
+    FROM previous p
+    WHERE i.id = p.id
+    RETURNING p.id, p.folder_id, i.image_order, p.size
+    """)
+    Mono<ImageMetadata> updateFolderId(Long id, Long folderId);
 
-    Mono<Image> findTopByFolderIdOrderByImageOrderDesc(Long folderId);
+    @Modifying
+    @Query("UPDATE images SET placeholder = :placeholder WHERE id = :id")
+    Mono<Integer> updatePlaceholder(Long id, String placeholder);
+
+    @Query("SELECT id FROM images WHERE placeholder IS NULL AND id > :afterImageId ORDER BY id LIMIT :limit")
+    Flux<Long> findIdsWithoutPlaceholder(long afterImageId, int limit);
+
+    @Query("SELECT COALESCE(placeholder, '') FROM images WHERE folder_id = :folderId ORDER BY image_order, id LIMIT :limit OFFSET :offset")
+    Flux<String> findPlaceholdersByFolderIdPaginated(Long folderId, int limit, int offset);
+
+    @Query("SELECT COALESCE(placeholder, '') FROM images WHERE folder_id = :folderId AND (image_order, id) > (:afterOrder, :afterId) ORDER BY image_order, id LIMIT :limit")
+    Flux<String> findPlaceholdersByFolderIdAfter(Long folderId, long afterOrder, long afterId, int limit);
+
+    @Query("SELECT COALESCE(placeholder, '') FROM images WHERE folder_id = :folderId AND image_order IS NULL AND id > :afterId ORDER BY id LIMIT :limit")
+    Flux<String> findUnorderedPlaceholdersByFolderIdAfter(Long folderId, long afterId, int limit);
+
+    @Query("""
+    WITH ordered AS (
+        SELECT id, (ROW_NUMBER() OVER (ORDER BY image_order, id) - 1) * :gap AS new_order
+        FROM images
+        WHERE folder_id = :folderId
+    ),
+    updated_images AS (
+        UPDATE images i SET image_order = o.new_order
+        FROM ordered o
+        WHERE i.id = o.id AND i.image_order IS DISTINCT FROM o.new_order
+    ),
+    updated_thumbnails AS (
+        UPDATE thumbnails t SET thumbnail_order = o.new_order
+        FROM ordered o
+        WHERE t.image_id = o.id AND t.thumbnail_order IS DISTINCT FROM o.new_order
+    )
+    SELECT COUNT(*) FROM ordered
+    """)
+    Mono<Long> rebalanceImageOrder(Long folderId, long gap);
 
-    Flux<Image> findByFolderIdOrderByImageOrder(Long folderId);
+    @Query("SELECT folder_id FROM images WHERE id = :id")
+    Mono<Long> findFolderIdById(Long id);
+
+    @Query("SELECT MAX(image_order) FROM images WHERE folder_id = :folderId")
+    Mono<Long> findMaxImageOrderByFolderId(Long folderId);
+
+    @Query("SELECT id, folder_id, image_order, size FROM images WHERE folder_id = :folderId ORDER BY image_order")
+    Flux<ImageMetadata> findMetadataByFolderIdOrderByImageOrder(Long folderId);
 
     Mono<Long> countByFolderId(Long folderId);
+
+    @Query("DELETE FROM images WHERE id = :id RETURNING id, folder_id, image_order, size")
+    Mono<ImageMetadata> deleteReturningMetadata(Long id);
+
+    @Query("SELECT folder_id, COUNT(*) AS image_count, COALESCE(SUM(size), 0) AS total_size FROM images GROUP BY folder_id")
+    Flux<FolderImageStatistics> findFolderImageStatistics();
+
+    Mono<Long> countByFolderIdAndImageOrderLessThan(Long folderId, Long imageOrder);
 }
@@ -1,6 +1,8 @@
 package agh.project.oot.repository;
 
+import agh.project.oot.model.MissingThumbnails;
 import agh.project.oot.model.Thumbnail;
+import agh.project.oot.model.ThumbnailMetadata;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
@@ -18,11 +20,42 @@ public interface ThumbnailRepository extends ReactiveCrudRepository<Thumbnail, L
     Flux<Thumbnail> findByImageId(Long imageId);
     Flux<Thumbnail> removeAllByImageId(Long imageId);
 
+    @Query("SELECT id FROM thumbnails WHERE type = :type")
+    Flux<Long> findIdsByType(ThumbnailType type);
+
+    @Query("SELECT image_id FROM thumbnails WHERE id = :id")
+    Mono<Long> findImageIdById(Long id);
+
+    @Query("SELECT id, image_id, type, thumbnail_order, size FROM thumbnails WHERE image_id = :imageId")
+    Flux<ThumbnailMetadata> findMetadataByImageId(Long imageId);
+
+    @Query("""
+    SELECT i.id AS image_id, ARRAY_AGG(t.type) AS types
+    FROM images i
+    CROSS JOIN UNNEST(CAST(:types AS VARCHAR[])) AS t(type)
+    WHERE i.id > :afterImageId
+      AND NOT EXISTS (SELECT 1 FROM thumbnails th WHERE th.image_id = i.id AND th.type = t.type)
+    GROUP BY i.id
+    ORDER BY i.id
+    LIMIT :limit
+    """)
+    Flux<MissingThumbnails> findMissingThumbnails(long afterImageId, String[] types, int limit);
+
+    @Query("SELECT last_id FROM backfill_checkpoints WHERE name = :name")
+    Mono<Long> findBackfillCheckpoint(String name);
+
+    @Modifying
+    @Query("INSERT INTO backfill_checkpoints (name, last_id) VALUES (:name, :lastId) ON CONFLICT (name) DO UPDATE SET last_id = EXCLUDED.last_id")
+    Mono<Integer> saveBackfillCheckpoint(String name, long lastId);
+
+    @Modifying
+    @Query("DELETE FROM backfill_checkpoints WHERE name = :name")
+    Mono<Integer> deleteBackfillCheckpoint(String name);
+
     @Query("""
-    SELECT * FROM thumbnails t
-    JOIN images i ON t.image_id = i.id
-    WHERE t.type = :type AND i.folder_id = :folderId
-    ORDER BY t.thumbnail_order
+    SELECT id, data_hash, size, image_id, folder_id, type, thumbnail_order FROM thumbnails
+    WHERE folder_id = :folderId AND type = :type
+    ORDER BY thumbnail_order, image_id
     LIMIT :limit OFFSET :offset
     """)
     Flux<Thumbnail> findByTypeAndFolderPaginated(
@@ -32,7 +65,40 @@ public interface ThumbnailRepository extends ReactiveCrudRepository<Thumbnail, L
             @Param("folderId") int folderId
     );
 
+    @Query("""
+    SELECT id, data_hash, size, image_id, folder_id, type, thumbnail_order FROM thumbnails
+    WHERE folder_id = :folderId AND type = :type
+      AND (thumbnail_order, image_id) > (:afterOrder, :afterImageId)
+    ORDER BY thumbnail_order, image_id
+    LIMIT :limit
+    """)
+    Flux<Thumbnail> findByTypeAndFolderAfter(
+            @Param("type") ThumbnailType type,
+            @Param("afterOrder") long afterOrder,
+            @Param("afterImageId") long afterImageId,
+            @Param("limit") int limit,
+            @Param("folderId") int folderId
+    );
+
+    @Query("""
+    SELECT id, data_hash, size, image_id, folder_id, type, thumbnail_order FROM thumbnails
+    WHERE folder_id = :folderId AND type = :type
+      AND thumbnail_order IS NULL AND image_id > :afterImageId
+    ORDER BY image_id
+    LIMIT :limit
+    """)
+    Flux<Thumbnail> findUnorderedByTypeAndFolderAfter(
+            @Param("type") ThumbnailType type,
+            @Param("afterImageId") long afterImageId,
+            @Param("limit") int limit,
+            @Param("folderId") int folderId
+    );
+
     @Modifying
     @Query("UPDATE thumbnails SET thumbnail_order = :thumbnailOrder WHERE id = :thumbnailId")
     Mono<Integer> updateThumbnailOrder(Long thumbnailId, Long thumbnailOrder);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("UPDATE thumbnails SET thumbnail_order = :thumbnailOrder WHERE image_id = :imageId")
+    Mono<Integer> updateThumbnailOrderByImageId(Long imageId, Long thumbnailOrder);
+}
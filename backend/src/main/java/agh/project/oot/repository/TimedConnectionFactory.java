@@ -0,0 +1,53 @@
+package agh.project.oot.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.publisher.Mono;
+
+public class TimedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionPool> {
+    private final ConnectionPool connectionPool;
+    private final Timer acquireTimer;
+    private final Timer failedAcquireTimer;
+
+    public TimedConnectionFactory(ConnectionPool connectionPool, MeterRegistry meterRegistry) {
+        this.connectionPool = connectionPool;
+        this.acquireTimer = Timer.builder("r2dbc.pool.acquire")
+                .description("Time spent waiting for a pooled connection")
+                .tag("outcome", "success")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failedAcquireTimer = Timer.builder("r2dbc.pool.acquire")
+                .description("Time spent waiting for a pooled connection")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return connectionPool.create()
+                    .doOnSuccess(connection -> sample.stop(acquireTimer))
+                    .doOnError(error -> sample.stop(failedAcquireTimer));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return connectionPool.getMetadata();
+    }
+
+    @Override
+    public ConnectionPool unwrap() {
+        return connectionPool;
+    }
+
+    public void dispose() {
+        connectionPool.dispose();
+    }
+}
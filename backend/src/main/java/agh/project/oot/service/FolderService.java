@@ -1,25 +1,47 @@
 package agh.project.oot.service;
 
 import agh.project.oot.model.Folder;
+import agh.project.oot.model.FolderTreeDeletion;
 import agh.project.oot.repository.FolderRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Arrays;
+
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class FolderService {
     private final FolderRepository folderRepository;
+    private final Mono<FolderTree> folderTree;
+
+    public FolderService(FolderRepository folderRepository) {
+        this.folderRepository = folderRepository;
+        this.folderTree = folderRepository.findAll()
+                .collectList()
+                .map(FolderTree::new)
+                .doOnNext(tree -> log.info("Loaded folder tree with {} folders", tree.size()))
+                .cache(tree -> Duration.ofMillis(Long.MAX_VALUE), error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFolderTree() {
+        folderTree.subscribe(
+                tree -> {},
+                error -> log.error("Error loading folder tree", error));
+    }
 
     public Flux<Folder> getFolders() {
-        return folderRepository.findAll();
+        return folderTree.flatMapIterable(FolderTree::all);
     }
 
     public Mono<Folder> findById(Long id) {
-        return folderRepository.findById(id);
+        return folderTree.flatMap(tree -> Mono.justOrEmpty(tree.get(id)));
     }
 
     public Mono<Long> getParentId(Long id) {
@@ -28,18 +50,25 @@ public class FolderService {
 
 
     public Flux<Folder> getSubfolders(Long parentId) {
-        return folderRepository.findByParentId(parentId);
+        return folderTree.flatMapIterable(tree -> tree.children(parentId));
     }
 
     public Mono<Long> createFolderIfNotExists(String folderName, Long parentId) {
-        return folderRepository.findByNameAndParentId(folderName, parentId)
-                .switchIfEmpty(folderRepository.save(new Folder(folderName, parentId)))
+        return folderTree.flatMap(tree -> Mono.justOrEmpty(tree.find(parentId, folderName))
+                        .switchIfEmpty(Mono.defer(() -> folderRepository.findByNameAndParentId(folderName, parentId)
+                                .switchIfEmpty(folderRepository.save(new Folder(folderName, parentId))
+                                        .onErrorResume(DuplicateKeyException.class, error -> folderRepository.findByNameAndParentId(folderName, parentId)))
+                                .doOnNext(tree::add))))
                 .map(Folder::getId);
     }
 
-    public Mono<Void> deleteFolderById(Long folderId) {
-        return folderRepository.findById(folderId)
-                .flatMap(folder -> folderRepository.deleteById(folderId))
-                .then();
+    public Mono<FolderTreeDeletion> deleteFolderTree(Long folderId) {
+        return folderRepository.deleteFolderTree(folderId)
+                .flatMap(deletion -> folderTree
+                        .doOnNext(tree -> Arrays.stream(deletion.folderIds()).forEach(tree::remove))
+                        .thenReturn(deletion))
+                .doOnNext(deletion -> log.info("Deleted folder {} with {} subfolders and {} images",
+                        folderId, deletion.folderIds().length - 1, deletion.imageCount()))
+                .doOnError(error -> log.error("Error deleting folder tree {}", folderId, error));
     }
 }
@@ -0,0 +1,213 @@
+package agh.project.oot.service;
+
+import agh.project.oot.model.FolderImageStatistics;
+import agh.project.oot.repository.ImageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+@Slf4j
+@Component
+public class FolderStatistics {
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    // writes whose folders are only known from their result, they hold off every folder
+    private final PendingWrites unattributed = new PendingWrites();
+    private final ImageRepository imageRepository;
+    private volatile boolean loaded;
+
+    public FolderStatistics(ImageRepository imageRepository, MeterRegistry meterRegistry) {
+        this.imageRepository = imageRepository;
+        Gauge.builder("images.stored", this, statistics -> statistics.sum(Counter::imageCount))
+                .description("Images stored across all folders")
+                .register(meterRegistry);
+        Gauge.builder("images.stored.bytes", this, statistics -> statistics.sum(Counter::totalSize))
+                .description("Bytes of original images stored across all folders")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reconcile().subscribe();
+    }
+
+    @Scheduled(fixedDelayString = "${folderStatistics.reconcileInterval}", initialDelayString = "${folderStatistics.reconcileInterval}")
+    public Mono<Void> reconcile() {
+        return Mono.defer(() -> {
+                    unattributed.startReconcile();
+                    counters.values().forEach(Counter::startReconcile);
+                    return imageRepository.findFolderImageStatistics()
+                            .collectMap(FolderImageStatistics::folderId);
+                })
+                .doOnNext(this::replaceAll)
+                .doOnError(error -> log.error("Unable to reconcile folder statistics", error))
+                .onErrorComplete()
+                .then();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public long getImageCount(Long folderId) {
+        Counter counter = counters.get(folderId);
+        return counter == null ? 0 : counter.imageCount();
+    }
+
+    /**
+     * Marks the images of a folder as being written until {@code write} terminates. The counter update has to be part
+     * of {@code write}, so that a reconcile never sees a row committed while its update is still missing or pending.
+     */
+    public <T> Mono<T> trackWrite(Long folderId, Mono<T> write) {
+        return trackWrite(Set.of(folderId), write);
+    }
+
+    public <T> Mono<T> trackWrite(Set<Long> folderIds, Mono<T> write) {
+        return Mono.defer(() -> {
+            List<Counter> pending = folderIds.stream().map(this::beginWrite).toList();
+            return write.doFinally(signal -> pending.forEach(Counter::end));
+        });
+    }
+
+    /**
+     * Tracks a write whose folders are only known from its result, such as a delete or a move.
+     */
+    public <T> Mono<T> trackWrite(Mono<T> write) {
+        return Mono.defer(() -> {
+            unattributed.begin();
+            return write.doFinally(signal -> unattributed.end());
+        });
+    }
+
+    public void added(Long folderId, Long size) {
+        counter(folderId).add(1, size);
+    }
+
+    public void removed(Long folderId, Long size) {
+        counter(folderId).add(-1, size == null ? null : -size);
+    }
+
+    public void moved(Long fromFolderId, Long toFolderId, Long size) {
+        if (!fromFolderId.equals(toFolderId)) {
+            removed(fromFolderId, size);
+            added(toFolderId, size);
+        }
+    }
+
+    public void removeFolders(Long[] folderIds) {
+        for (Long folderId : folderIds) {
+            counters.remove(folderId);
+        }
+    }
+
+    private Counter counter(Long folderId) {
+        return counters.computeIfAbsent(folderId, id -> new Counter());
+    }
+
+    // begins inside compute, so that a reconcile cannot drop the counter between its lookup and the write
+    private Counter beginWrite(Long folderId) {
+        return counters.compute(folderId, (id, counter) -> {
+            Counter current = counter == null ? new Counter() : counter;
+            current.begin();
+            return current;
+        });
+    }
+
+    // A write that overlapped the query may or may not be in the snapshot, so its folder keeps the live counter
+    // and is reconciled by a later run.
+    private void replaceAll(Map<Long, FolderImageStatistics> actual) {
+        if (!unattributed.isSettled()) {
+            log.debug("Postponing folder statistics reconcile, an image was deleted or moved during the query");
+            return;
+        }
+        counters.forEach((folderId, counter) -> {
+            if (!actual.containsKey(folderId)) {
+                counters.computeIfPresent(folderId, (id, current) -> current.isSettled() ? null : current);
+            }
+        });
+        actual.forEach((folderId, statistics) -> {
+            Long drift = counter(folderId).reconcile(statistics.imageCount(), statistics.totalSize());
+            if (loaded && drift != null && drift != 0) {
+                log.info("Corrected image count of folder {} by {}", folderId, -drift);
+            }
+        });
+        loaded = true;
+    }
+
+    private double sum(ToLongFunction<Counter> value) {
+        return counters.values().stream().mapToLong(value).sum();
+    }
+
+    private static class PendingWrites {
+        private int pending;
+        private boolean unsettled;
+
+        synchronized void begin() {
+            pending++;
+            unsettled = true;
+        }
+
+        synchronized void end() {
+            pending--;
+        }
+
+        synchronized void startReconcile() {
+            unsettled = pending > 0;
+        }
+
+        /**
+         * Whether no write was in flight since the last {@link #startReconcile()}.
+         */
+        synchronized boolean isSettled() {
+            return !unsettled;
+        }
+
+        synchronized void touch() {
+            unsettled = true;
+        }
+    }
+
+    private static final class Counter extends PendingWrites {
+        private final AtomicLong imageCount = new AtomicLong();
+        private final AtomicLong totalSize = new AtomicLong();
+
+        long imageCount() {
+            return imageCount.get();
+        }
+
+        long totalSize() {
+            return totalSize.get();
+        }
+
+        synchronized void add(long images, Long bytes) {
+            touch();
+            imageCount.addAndGet(images);
+            if (bytes != null) {
+                totalSize.addAndGet(bytes);
+            }
+        }
+
+        /**
+         * Returns by how much the image count was off, or null if a write overlapped the query.
+         */
+        synchronized Long reconcile(long images, long bytes) {
+            if (!isSettled()) {
+                return null;
+            }
+            totalSize.set(bytes);
+            return imageCount.getAndSet(images) - images;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package agh.project.oot.service;
+
+import agh.project.oot.model.Folder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+class FolderTree {
+    private final Map<Long, Folder> folders = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Folder>> children = new ConcurrentHashMap<>();
+
+    FolderTree(Collection<Folder> folders) {
+        folders.forEach(this::add);
+    }
+
+    Optional<Folder> get(Long id) {
+        return Optional.ofNullable(folders.get(id));
+    }
+
+    Optional<Folder> find(Long parentId, String name) {
+        return Optional.ofNullable(children.getOrDefault(parentId, Map.of()).get(name));
+    }
+
+    List<Folder> children(Long parentId) {
+        return List.copyOf(children.getOrDefault(parentId, Map.of()).values());
+    }
+
+    Collection<Folder> all() {
+        return List.copyOf(folders.values());
+    }
+
+    int size() {
+        return folders.size();
+    }
+
+    synchronized void add(Folder folder) {
+        folders.put(folder.getId(), folder);
+        children.computeIfAbsent(folder.getParentId(), parentId -> new ConcurrentHashMap<>())
+                .put(folder.getName(), folder);
+    }
+
+    synchronized void remove(Long id) {
+        Folder folder = folders.remove(id);
+        if (folder != null) {
+            children.computeIfPresent(folder.getParentId(), (parentId, siblings) -> {
+                siblings.remove(folder.getName());
+                return siblings.isEmpty() ? null : siblings;
+            });
+        }
+        children.remove(id);
+    }
+}
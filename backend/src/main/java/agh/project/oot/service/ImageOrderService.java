@@ -1,16 +1,22 @@
 package agh.project.oot.service;
 
 import agh.project.oot.model.Folder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+@Slf4j
 @Component
 public class ImageOrderService {
-    private final ConcurrentHashMap<Long, AtomicLong> folderImageOrders = new ConcurrentHashMap<>();
+    private static final long ORDER_GAP = 1024;
+    private static final long MAX_ORDER = Integer.MAX_VALUE;
+
+    private final ConcurrentHashMap<Long, FolderOrder> folderOrders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Mono<Void>> rebalances = new ConcurrentHashMap<>();
     private final FolderService folderService;
     private final ImageService imageService;
     private final ThumbnailService thumbnailService;
@@ -29,47 +35,127 @@ public class ImageOrderService {
                                 .map(Folder::getId)
                 )
                 .flatMap(folderId -> imageService.findTopByFolderIdOrderByImageOrderDesc(folderId)
-                        .mapNotNull(currentOrder -> folderImageOrders.put(folderId, new AtomicLong(currentOrder + 1)))
+                        .mapNotNull(currentOrder -> folderOrders.put(folderId, new FolderOrder(currentOrder + ORDER_GAP, ORDER_GAP)))
                         .then())
                 .then();
     }
 
     public Mono<Long> getNextImageOrder(Long folderId) {
-        return Mono.fromCallable(() ->
-                folderImageOrders.computeIfAbsent(folderId, id -> new AtomicLong(0))
-                        .getAndIncrement());
+        return nextAssignment(folderId).map(Assignment::order);
     }
 
+    /**
+     * Hands out the next order of a folder and stores it with {@code writeOrder}. An order written while the folder
+     * was being rebalanced would keep its pre-rebalance value, so it is written again with an order handed out after
+     * the rebalance.
+     */
+    public Mono<Long> assignNextImageOrder(Long folderId, Function<Long, Mono<?>> writeOrder) {
+        return nextAssignment(folderId)
+                .flatMap(assignment -> writeOrder.apply(assignment.order())
+                        .then(Mono.defer(() -> assignment.folderOrder().isRetired()
+                                ? awaitRebalance(folderId).then(assignNextImageOrder(folderId, writeOrder))
+                                : Mono.just(assignment.order()))));
+    }
 
-    public Mono<Void> recountImageOrder(Long imageId) {
-        return imageService.findFolderIdByImageId(imageId)
-                .flatMap(folderId -> {
-                            folderImageOrders.put(folderId, new AtomicLong(0));
-                            return recountOrderManyImages(folderId, Set.of(imageId));
-                        }
-                );
+    /**
+     * Position of a freshly ordered image among the ordered images of its folder, derived from the folder's image count
+     * and the orders handed out after it. Empty for orders handed out before the current range.
+     */
+    public Mono<Long> positionOf(Long folderId, long imageOrder) {
+        return Mono.defer(() -> {
+            FolderOrder folderOrder = folderOrders.get(folderId);
+            if (folderOrder == null || !folderOrder.isHandedOut(imageOrder)) {
+                return Mono.empty();
+            }
+            long handedOutAfter = folderOrder.countHandedOutAfter(imageOrder);
+            return imageService.countImagesByFolderId(folderId)
+                    .map(count -> Math.max(0, count - 1 - handedOutAfter));
+        });
     }
 
-    public Mono<Void> recountOrderManyImages(Set<Long> imageId, Long folderId) {
-        folderImageOrders.put(folderId, new AtomicLong(0));
-        return recountOrderManyImages(folderId, imageId);
+    private Mono<Assignment> nextAssignment(Long folderId) {
+        return Mono.defer(() -> {
+            FolderOrder folderOrder = folderOrders.computeIfAbsent(folderId, id -> new FolderOrder(0, ORDER_GAP));
+            long order = folderOrder.next();
+            return order <= MAX_ORDER && !folderOrder.isRetired()
+                    ? Mono.just(new Assignment(order, folderOrder))
+                    : rebalance(folderId).then(nextAssignment(folderId));
+        });
     }
 
-    private Mono<Void> recountOrderManyImages(Long folderId, Set<Long> imageIds) {
-        return imageService.findImagesByFolderIdOrderByImageOrder(folderId)
-                .filter(image -> !imageIds.contains(image.getId()))
-                .flatMap(image -> {
-                            long newImageOrder = folderImageOrders.get(folderId).getAndIncrement();
-                            return imageService.updateImageOrder(image, newImageOrder)
-                                    .then(recountThumbnailOrder(image.getId(), newImageOrder));
-                        }
-                )
-                .then();
+    private Mono<Void> awaitRebalance(Long folderId) {
+        return Mono.defer(() -> rebalances.getOrDefault(folderId, Mono.empty()));
+    }
+
+    /**
+     * Callers that overflow the order of the same folder concurrently share a single rebalance. Orders handed out
+     * before it are retired when it starts, see {@link #assignNextImageOrder}.
+     */
+    public Mono<Void> rebalance(Long folderId) {
+        return rebalances.computeIfAbsent(folderId, id -> Mono.fromRunnable(() -> {
+                    FolderOrder current = folderOrders.get(id);
+                    if (current != null) {
+                        current.retire();
+                    }
+                })
+                .then(Mono.defer(() -> imageService.countImagesByFolderId(id)))
+                .map(ImageOrderService::gapFor)
+                .flatMap(gap -> imageService.rebalanceImageOrder(id, gap)
+                        .flatMap(count -> {
+                            if (count * gap > MAX_ORDER) {
+                                return Mono.error(new IllegalStateException("Folder " + id + " has too many images to keep an image order"));
+                            }
+                            log.info("Rebalanced image order of {} images in folder {} with gap {}", count, id, gap);
+                            folderOrders.put(id, new FolderOrder(count * gap, gap));
+                            return Mono.<Void>empty();
+                        }))
+                .doFinally(signalType -> rebalances.remove(id))
+                .cache());
+    }
+
+    // keeps at least half of the order range free for new images, even in folders too large for ORDER_GAP
+    static long gapFor(long count) {
+        return Math.max(1, Math.min(ORDER_GAP, MAX_ORDER / Math.max(1, 2 * count)));
     }
 
     public Mono<Void> recountThumbnailOrder(Long imageId, Long newOrderId) {
-        return thumbnailService.findAllThumbnailsByImageId(imageId)
-                .flatMap(thumbnail -> thumbnailService.updateThumbnailOrder(thumbnail, newOrderId))
+        return thumbnailService.updateThumbnailOrderByImageId(imageId, newOrderId)
                 .then();
     }
+
+    private record Assignment(long order, FolderOrder folderOrder) {
+    }
+
+    private static final class FolderOrder {
+        private final long start;
+        private final long gap;
+        private final AtomicLong next;
+        private volatile boolean retired;
+
+        private FolderOrder(long start, long gap) {
+            this.start = start;
+            this.gap = gap;
+            this.next = new AtomicLong(start);
+        }
+
+        long next() {
+            return next.getAndAdd(gap);
+        }
+
+        boolean isHandedOut(long order) {
+            return !retired && order >= start && order < next.get() && (order - start) % gap == 0;
+        }
+
+        long countHandedOutAfter(long order) {
+            return (next.get() - order) / gap - 1;
+        }
+
+        boolean isRetired() {
+            return retired;
+        }
+
+        void retire() {
+            retired = true;
+        }
+    }
 }
@@ -1,10 +1,15 @@
 package agh.project.oot.service;
 
 import agh.project.oot.ImageSink;
+import agh.project.oot.blob.BlobStore;
 import agh.project.oot.model.Image;
+import agh.project.oot.model.ImageMetadata;
+import agh.project.oot.model.PageCursor;
+import agh.project.oot.repository.BatchWriter;
 import agh.project.oot.repository.ImageRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -16,10 +21,15 @@ import reactor.core.scheduler.Schedulers;
 @Slf4j
 public class ImageService {
     private final ImageRepository imageRepository;
+    private final BatchWriter<Image> imageBatchWriter;
     private final ImageSink imageSink;
+    private final BlobStore blobStore;
+    private final FolderStatistics folderStatistics;
 
     public Mono<Image> saveAndNotifyThumbnail(Image image) {
-        return imageRepository.save(image)
+        return storeData(image)
+                .flatMap(stored -> folderStatistics.trackWrite(stored.getFolderId(), imageBatchWriter.save(stored)
+                        .doOnNext(saved -> folderStatistics.added(saved.getFolderId(), saved.getSize()))))
                 .publishOn(Schedulers.boundedElastic())
                 .doOnSuccess(image1 -> {
                         synchronized (imageSink){
@@ -31,50 +41,121 @@ public class ImageService {
 
     public Mono<Image> findById(Long id) {
         return imageRepository.findById(id)
+                .flatMap(this::loadData)
                 .doOnError(error -> log.error("Error finding image by id: {}. [{}]", id, error.getMessage()));
     }
 
-    public Flux<Image> findAllImages() {
-        return imageRepository.findAll()
-                .doOnError(error -> log.error("Error retrieving images from the database", error));
-    }
-
     public Mono<Long> findFolderIdByImageId(Long id) {
-        return findById(id).map(Image::getFolderId)
+        return imageRepository.findFolderIdById(id)
                 .doOnError(error -> log.error("Error getting folder for imageId", error));
     }
 
-    public Flux<Image> findImagesByFolderIdOrderByImageOrder(Long folderId) {
-        return imageRepository.findByFolderIdOrderByImageOrder(folderId)
+    public Flux<ImageMetadata> findImagesByFolderIdOrderByImageOrder(Long folderId) {
+        return imageRepository.findMetadataByFolderIdOrderByImageOrder(folderId)
                 .doOnError(error -> log.error("Error getting images for folderId", error));
     }
 
+    public Flux<String> findPlaceholdersByFolderId(Long folderId, Pageable pageable) {
+        int limit = pageable.getPageSize();
+        int offset = (pageable.getPageNumber() - 1) * pageable.getPageSize();
+        return imageRepository.findPlaceholdersByFolderIdPaginated(folderId, limit, offset)
+                .doOnError(error -> log.error("Error getting placeholders for folderId", error));
+    }
+
+    public Flux<String> findPlaceholdersByFolderIdAfter(Long folderId, PageCursor cursor, int limit) {
+        // Images without an order come last, as in the page-number query.
+        Flux<String> placeholders = cursor.order() == null
+                ? imageRepository.findUnorderedPlaceholdersByFolderIdAfter(folderId, cursor.id(), limit)
+                : imageRepository.findPlaceholdersByFolderIdAfter(folderId, cursor.order(), cursor.id(), limit)
+                        .concatWith(Flux.defer(() -> imageRepository.findUnorderedPlaceholdersByFolderIdAfter(folderId, 0L, limit)))
+                        .take(limit);
+        return placeholders
+                .doOnError(error -> log.error("Error getting placeholders for folderId", error));
+    }
+
     public Mono<Long> findTopByFolderIdOrderByImageOrderDesc(Long folderId) {
-        return imageRepository.findTopByFolderIdOrderByImageOrderDesc(folderId)
-                .map(Image::getImageOrder)
+        return imageRepository.findMaxImageOrderByFolderId(folderId)
                 .doOnError(error -> log.error("Error finding top for folderId", error));
     }
 
     public Mono<Void> removeById(Long id) {
-        return imageRepository.deleteById(id)
-                .doOnError(error -> log.error("Error removing image from database", error));
+        return folderStatistics.trackWrite(imageRepository.deleteReturningMetadata(id)
+                        .doOnNext(removed -> folderStatistics.removed(removed.folderId(), removed.size())))
+                .doOnError(error -> log.error("Error removing image from database", error))
+                .then();
     }
 
     public Mono<Long> countImagesByFolderId(Long folderId) {
+        if (folderStatistics.isLoaded()) {
+            return Mono.just(folderStatistics.getImageCount(folderId));
+        }
         return imageRepository.countByFolderId(folderId)
                 .doOnError(error -> log.error("Error counting images in database", error));
     }
 
+    public void removeFolderStatistics(Long[] folderIds) {
+        folderStatistics.removeFolders(folderIds);
+    }
+
     public Mono<Boolean> updateImageOrder(Image image, long imageOrder) {
         image.setImageOrder(imageOrder);
-        return imageRepository.updateImageOrder(image.getId(), imageOrder)
+        return updateImageOrder(image.getId(), imageOrder);
+    }
+
+    public Mono<Boolean> updateImageOrder(Long imageId, long imageOrder) {
+        return imageRepository.updateImageOrder(imageId, imageOrder)
                 .map(rowsUpdated -> rowsUpdated > 0)
-                .doOnError(error -> log.error("Error updating image order for imageId: {}", image.getId(), error));
+                .doOnError(error -> log.error("Error updating image order for imageId: {}", imageId, error));
+    }
+
+    public Mono<Long> rebalanceImageOrder(Long folderId, long gap) {
+        return imageRepository.rebalanceImageOrder(folderId, gap)
+                .doOnError(error -> log.error("Error rebalancing image order for folderId: {}", folderId, error));
+    }
+
+    public Mono<Long> countImagesBeforeOrder(Long folderId, Long imageOrder) {
+        return imageRepository.countByFolderIdAndImageOrderLessThan(folderId, imageOrder);
     }
 
     public Mono<Boolean> updateFolderId(Long id, Long folderId) {
-        return imageRepository.updateFolderId(id, folderId)
-                .map(rowsUpdated -> rowsUpdated > 0)
+        return folderStatistics.trackWrite(imageRepository.updateFolderId(id, folderId)
+                        .doOnNext(previous -> folderStatistics.moved(previous.folderId(), folderId, previous.size())))
+                .map(previous -> true)
+                .defaultIfEmpty(false)
                 .doOnError(error -> log.error("Error updating folderId for imageId: {}", id, error));
     }
+
+    public Mono<Boolean> updatePlaceholder(Image image) {
+        return updatePlaceholder(image.getId(), image.getPlaceholder());
+    }
+
+    public Mono<Boolean> updatePlaceholder(Long id, String placeholder) {
+        return imageRepository.updatePlaceholder(id, placeholder)
+                .map(rowsUpdated -> rowsUpdated > 0)
+                .doOnError(error -> log.error("Error updating placeholder for imageId: {}", id, error));
+    }
+
+    public Flux<Long> findIdsWithoutPlaceholder(long afterImageId, int limit) {
+        return imageRepository.findIdsWithoutPlaceholder(afterImageId, limit);
+    }
+
+    private Mono<Image> storeData(Image image) {
+        return blobStore.put(image.getData())
+                .map(hash -> {
+                    image.setDataHash(hash);
+                    image.setSize((long) image.getData().length);
+                    return image;
+                });
+    }
+
+    private Mono<Image> loadData(Image image) {
+        if (image.getDataHash() == null) {
+            return Mono.just(image);
+        }
+        return blobStore.get(image.getDataHash())
+                .map(data -> {
+                    image.setData(data);
+                    return image;
+                });
+    }
 }
@@ -88,9 +88,10 @@ public class MessageSender {
                     var folder = sessionData.getFolderId();
 
                     return thumbnailService.findAllThumbnailsAfterDeleting(type, page, message, folder)
-                            .flatMap(thumbnail -> sendMessage(
+                            .index()
+                            .flatMap(indexed -> sendMessage(
                                     sessionData.getSession(),
-                                    new GetThumbnailsMessage(type, Collections.singletonList(IconDto.from(thumbnail))))
+                                    new GetThumbnailsMessage(type, Collections.singletonList(IconDto.from(indexed.getT2(), indexed.getT1()))))
                             );
                 })
                 .then();
@@ -15,10 +15,12 @@ import agh.project.oot.messages.PingMessage;
 import agh.project.oot.messages.UploadImageMessage;
 import agh.project.oot.messages.UploadZipMessage;
 import agh.project.oot.model.*;
+import agh.project.oot.thumbnails.ImageValidator;
 import agh.project.oot.util.ImageProcessor;
 import agh.project.oot.util.ZipResolver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
@@ -31,6 +33,7 @@ import reactor.core.scheduler.Schedulers;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import java.util.zip.ZipInputStream;
 
@@ -46,6 +49,10 @@ public class MessageService {
     private final ImageProcessor imageProcessor;
     private final MessageSender messageSender;
     private final ZipResolver zipResolver;
+    private final ImageValidator imageValidator;
+
+    @Value("${database.ingestConcurrency}")
+    private int ingestConcurrency;
 
     @EventListener(ApplicationReadyEvent.class)
     public void initializeImageProcessing() {
@@ -57,26 +64,38 @@ public class MessageService {
         return imageProcessor.processAndNotifyMissingThumbnails();
     }
 
-    public Mono<Void> handleUploadImages(UploadImageMessage message) {
-        var imagesData = message.getImagesData();
-
-        Mono<Boolean> isLastPageMono = imageService.countImagesByFolderId(message.getFolderId())
-                .map(count -> checkIfIsLastPage(message, (double) count));
+    public Mono<Void> handleUploadImages(WebSocketSession session, UploadImageMessage message) {
+        return Flux.fromIterable(message.getImagesData())
+                .map(IconDto::getData)
+                .filter(imageValidator::isSupported)
+                .collectList()
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(imagesData -> {
+                    Mono<Boolean> isLastPageMono = imageService.countImagesByFolderId(message.getFolderId())
+                            .map(count -> checkIfIsLastPage(message, (double) count));
+
+                    Mono<Void> placeholdersMono = isLastPageMono.flatMap(isLastPage -> isLastPage && !imagesData.isEmpty()
+                            ? handleGeneratePlaceholdersAfterUpload((long) imagesData.size(), message.getPageable().getPageNumber())
+                            : Mono.empty()
+                    );
 
-        Mono<Void> placeholdersMono = isLastPageMono.flatMap(isLastPage -> isLastPage
-                ? handleGeneratePlaceholdersAfterUpload((long) imagesData.size(), message.getPageable().getPageNumber())
-                : Mono.empty()
-        );
+                    Mono<Void> saveAndNotifyMono = Flux.fromIterable(imagesData)
+                            .map(Image::new)
+                            .flatMap(imageService::saveAndNotifyThumbnail, ingestConcurrency)
+                            .then();
 
-        Mono<Void> saveAndNotifyMono = Flux.fromIterable(imagesData)
-                .map(icon -> new Image(icon.getData()))
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .flatMap(imageService::saveAndNotifyThumbnail)
-                .sequential()
-                .then();
+                    int rejected = message.getImagesData().size() - imagesData.size();
+                    return sendRejectedFilesResponse(session, rejected)
+                            .then(placeholdersMono)
+                            .then(saveAndNotifyMono);
+                });
+    }
 
-        return placeholdersMono.then(saveAndNotifyMono);
+    private Mono<Void> sendRejectedFilesResponse(WebSocketSession session, int rejected) {
+        if (rejected == 0) {
+            return Mono.empty();
+        }
+        return messageSender.sendBadRequest(session, "Rejected " + rejected + " unsupported file(s)", ResponseStatus.UNSUPPORTED_MEDIA_TYPE);
     }
 
     private boolean checkIfIsLastPage(UploadImageMessage message, double count) {
@@ -100,18 +119,19 @@ public class MessageService {
                 .then();
     }
 
-    public Mono<Void> handleUploadZip(UploadZipMessage message) {
-        return Flux.using(
-                        () -> new ZipInputStream(new ByteArrayInputStream(message.getZipData())),
-                        zipResolver::processZipEntries,
-                        this::closeQuietly
-                )
-                .subscribeOn(Schedulers.boundedElastic())
-                .parallel()
-                .runOn(Schedulers.parallel())
-                .flatMap(imageService::saveAndNotifyThumbnail)
-                .sequential()
-                .then(Mono.defer(() -> messageSender.sendFoldersForAll(message.getFolderId())));
+    public Mono<Void> handleUploadZip(WebSocketSession session, UploadZipMessage message) {
+        return Mono.defer(() -> {
+            AtomicInteger rejected = new AtomicInteger();
+            return Flux.using(
+                            () -> new ZipInputStream(new ByteArrayInputStream(message.getZipData())),
+                            zis -> zipResolver.processZipEntries(zis, entryName -> rejected.incrementAndGet()),
+                            this::closeQuietly
+                    )
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flatMap(imageService::saveAndNotifyThumbnail, ingestConcurrency)
+                    .then(Mono.defer(() -> sendRejectedFilesResponse(session, rejected.get())))
+                    .then(Mono.defer(() -> messageSender.sendFoldersForAll(message.getFolderId())));
+        });
     }
 
     private void closeQuietly(ZipInputStream zis) {
@@ -129,10 +149,10 @@ public class MessageService {
                 .then();
     }
 
-    public Mono<Void> handleGeneratePlaceholdersForGettingThumbnails(Long placeholdersNumber, WebSocketSession session) {
+    public Mono<Void> handleGeneratePlaceholdersForGettingThumbnails(Long placeholdersNumber, List<String> placeholders, WebSocketSession session) {
         return Flux.fromIterable(sessionRepository.getSessions().values())
                 .filter(sessionData -> sessionData.getSession().equals(session))
-                .flatMap(sessionData -> messageSender.sendMessage(sessionData.getSession(), new PlaceholderNumberMessage(placeholdersNumber)))
+                .flatMap(sessionData -> messageSender.sendMessage(sessionData.getSession(), new PlaceholderNumberMessage(placeholdersNumber, placeholders)))
                 .then();
     }
 
@@ -145,8 +165,10 @@ public class MessageService {
                             count.intValue() - message.getPageable().getPageSize() * (message.getPageable().getPageNumber() - 1),
                             message.getPageable().getPageSize()
                     );
-                    placeholdersCount = Math.max(placeholdersCount, 0);
-                    return handleGeneratePlaceholdersForGettingThumbnails((long) placeholdersCount, session);
+                    long placeholdersNumber = Math.max(placeholdersCount, 0);
+                    return findPlaceholdersPage(message)
+                            .collectList()
+                            .flatMap(placeholders -> handleGeneratePlaceholdersForGettingThumbnails(placeholdersNumber, placeholders, session));
                 })
                 .then();
 
@@ -156,9 +178,12 @@ public class MessageService {
                 .flatMap(folders -> sendFolderResponseMessage(session, folders, folderId))
                 .then();
 
-        Mono<Void> thumbnailsGenerated = thumbnailService.findAllThumbnailsByTypeAndFolder(message.getThumbnailType(), message.getPageable(), folderId)
-                .flatMap(thumbnail -> {
-                    message.setImagesData(List.of(IconDto.from(thumbnail)));
+        long firstPosition = (long) (message.getPageable().getPageNumber() - 1) * message.getPageable().getPageSize();
+        Mono<Void> thumbnailsGenerated = findThumbnailsPage(message)
+                .index()
+                .flatMap(indexed -> {
+                    message.setImagesData(List.of(IconDto.from(indexed.getT2(), firstPosition + indexed.getT1())));
+                    message.setCursor(PageCursor.from(indexed.getT2()));
                     return messageSender.sendMessage(session, message);
                 })
                 .doOnError(error -> log.error("Error getting thumbnails for folder {}", folderId, error))
@@ -170,6 +195,18 @@ public class MessageService {
                 .then(messageSender.sendMessage(session, new FetchingEndResponseMessage()));
     }
 
+    private Flux<String> findPlaceholdersPage(GetThumbnailsMessage message) {
+        return message.getCursor() != null
+                ? imageService.findPlaceholdersByFolderIdAfter(message.getFolderId(), message.getCursor(), message.getPageable().getPageSize())
+                : imageService.findPlaceholdersByFolderId(message.getFolderId(), message.getPageable());
+    }
+
+    private Flux<Thumbnail> findThumbnailsPage(GetThumbnailsMessage message) {
+        return message.getCursor() != null
+                ? thumbnailService.findAllThumbnailsByTypeAndFolderAfter(message.getThumbnailType(), message.getCursor(), message.getPageable().getPageSize(), message.getFolderId())
+                : thumbnailService.findAllThumbnailsByTypeAndFolder(message.getThumbnailType(), message.getPageable(), message.getFolderId());
+    }
+
     private Mono<Void> sendFolderResponseMessage(WebSocketSession session, List<Folder> folders, Long folderId) {
         return folderService.getParentId(folderId)
                 .flatMap(parentId -> messageSender.sendMessage(
@@ -190,33 +227,30 @@ public class MessageService {
 
     public Mono<Void> handleMoveImage(WebSocketSession session, MoveImageMessage message) {
         Long targetFolderId = message.getTargetFolderId();
-        Long currentFolderId = message.getCurrentFolderId();
 
         return Flux.fromIterable(message.getImageIds())
-                .flatMap(imageId -> thumbnailService.findImageByThumbnailId(imageId).flux()
-                        .concatMap(image -> imageService.updateFolderId(image.getId(), targetFolderId)
-                                .then(updateImageAndAllThumbnailsOrderId(image, targetFolderId))
+                .flatMap(imageId -> thumbnailService.findImageIdByThumbnailId(imageId).flux()
+                        .concatMap(movedImageId -> imageService.updateFolderId(movedImageId, targetFolderId)
+                                .then(updateImageAndAllThumbnailsOrderId(movedImageId, targetFolderId))
                                 .then(messageSender.sendMessage(session, new MoveImageResponseMessage(imageId)))
                         ))
-                .then(imageOrderService.recountOrderManyImages(message.getImageIds(), currentFolderId))
+                .then()
                 .onErrorResume(error -> {
                     log.error("Error moving image: {}", error.getMessage());
                     return messageSender.sendBadRequest(session, "Error moving image: " + error.getMessage(), ResponseStatus.BAD_REQUEST);
                 });
     }
 
-    private Mono<Void> updateImageAndAllThumbnailsOrderId(Image image, Long targetFolderId) {
-        return imageOrderService.getNextImageOrder(targetFolderId)
-                .flatMap(newOrder -> Mono.when(imageService.updateImageOrder(image, newOrder)
-                        , imageOrderService.recountThumbnailOrder(image.getId(), newOrder))
-                );
+    private Mono<Void> updateImageAndAllThumbnailsOrderId(Long imageId, Long targetFolderId) {
+        return imageOrderService.assignNextImageOrder(targetFolderId,
+                        newOrder -> Mono.when(imageService.updateImageOrder(imageId, newOrder)
+                                , imageOrderService.recountThumbnailOrder(imageId, newOrder)))
+                .then();
     }
 
     public Mono<Void> handleDeleteImage(DeleteImageMessage message) {
-        return thumbnailService.findThumbnailByThumbnailId(message.getId())
-                .map(Thumbnail::getImageId)
+        return thumbnailService.findImageIdByThumbnailId(message.getId())
                 .flatMap(imageId -> thumbnailService.removeAllThumbnailsByImageId(imageId)
-                        .then(imageOrderService.recountImageOrder(imageId))
                         .then(removeImageAndSendDeleteMessageResponse(message.getId(), imageId))
                 )
                 .then(messageSender.sendDeleteResponseMessage(message.getPageSize()));
@@ -225,23 +259,13 @@ public class MessageService {
     public Mono<Void> handleDeleteFolder(DeleteFolderMessage message) {
         Long folderId = message.getId();
 
-        return folderService.getSubfolders(folderId)
-                .flatMap(subfolder -> handleDeleteFolder(new DeleteFolderMessage(subfolder.getId(), message.getPageSize())))
-                .then(imageService.findImagesByFolderIdOrderByImageOrder(folderId)
-                        .flatMap(image -> deleteImageAndAllThumbnails(message, image))
-                        .then(Mono.when(folderService.deleteFolderById(folderId),
-                                messageSender.sendDeleteMessageResponse(new DeleteFolderResponseMessage(folderId)))
-                        )
-                )
+        return folderService.deleteFolderTree(folderId)
+                .doOnNext(deletion -> imageService.removeFolderStatistics(deletion.folderIds()))
+                .flatMap(thumbnailService::removeThumbnailData)
+                .then(messageSender.sendDeleteMessageResponse(new DeleteFolderResponseMessage(folderId)))
                 .then(messageSender.sendDeleteResponseMessage(message.getPageSize()));
     }
 
-    private Mono<Void> deleteImageAndAllThumbnails(DeleteFolderMessage message, Image image) {
-        return thumbnailService.removeAllThumbnailsByImageId(image.getId())
-                .then(imageOrderService.recountImageOrder(image.getId()))
-                .then(removeImageAndSendDeleteMessageResponse(message.getId(), image.getId()));
-    }
-
     private Mono<Void> removeImageAndSendDeleteMessageResponse(Long responseId, Long imageId) {
         return Mono.when(
                 imageService.removeById(imageId),
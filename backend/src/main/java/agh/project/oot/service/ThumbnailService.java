@@ -1,12 +1,20 @@
 package agh.project.oot.service;
 
+import agh.project.oot.blob.BlobStore;
+import agh.project.oot.blob.ThumbnailVolumeStore;
+import agh.project.oot.model.FolderTreeDeletion;
 import agh.project.oot.model.Image;
+import agh.project.oot.model.MissingThumbnails;
+import agh.project.oot.model.PageCursor;
 import agh.project.oot.model.Thumbnail;
 import agh.project.oot.model.ThumbnailType;
+import agh.project.oot.repository.BatchWriter;
 import agh.project.oot.repository.ThumbnailRepository;
 import agh.project.oot.thumbnails.ThumbnailConverter;
+import agh.project.oot.thumbnails.ThumbnailRenderScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -15,55 +23,153 @@ import reactor.core.scheduler.Schedulers;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.NoSuchElementException;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ThumbnailService {
+    private static final String BACKFILL_CHECKPOINT = "missing-thumbnails";
 
     private final ThumbnailConverter thumbnailConverter;
     private final ImageService imageService;
     private final ThumbnailRepository thumbnailRepository;
+    private final BatchWriter<Thumbnail> thumbnailBatchWriter;
+    private final BlobStore blobStore;
+    private final ThumbnailVolumeStore thumbnailVolumeStore;
+    private final ThumbnailRenderScheduler renderScheduler;
+
+    @Value("${thumbnail.backfillBatchSize}")
+    private int backfillBatchSize;
 
     public Flux<Tuple2<Image, Thumbnail>> generateMissingThumbnails() {
-        log.info("Generating missing thumbnails...");
+        return thumbnailRepository.findBackfillCheckpoint(BACKFILL_CHECKPOINT)
+                .defaultIfEmpty(0L)
+                .doOnNext(lastImageId -> log.info("Generating missing thumbnails for images after id {}...", lastImageId))
+                .flatMapMany(this::generateMissingThumbnailsAfter)
+                .concatWith(Mono.defer(() -> thumbnailRepository.deleteBackfillCheckpoint(BACKFILL_CHECKPOINT)).then(Mono.empty()));
+    }
+
+    private Flux<Tuple2<Image, Thumbnail>> generateMissingThumbnailsAfter(long lastImageId) {
+        String[] types = Arrays.stream(ThumbnailType.values()).map(Enum::name).toArray(String[]::new);
+        AtomicLong cursor = new AtomicLong(lastImageId);
+
+        return Mono.defer(() -> thumbnailRepository.findMissingThumbnails(cursor.get(), types, backfillBatchSize)
+                        .collectList()
+                        .doOnNext(batch -> {
+                            if (!batch.isEmpty()) {
+                                cursor.set(batch.getLast().imageId());
+                            }
+                        }))
+                .repeat()
+                .takeWhile(batch -> !batch.isEmpty())
+                .concatMap(batch -> Flux.fromIterable(batch)
+                        .flatMap(missing -> imageService.findById(missing.imageId())
+                                .flatMapMany(image -> generateMissingThumbnailsForImage(image, toThumbnailTypes(missing))
+                                        .map(thumbnail -> Tuples.of(image, thumbnail))), renderScheduler.getThreads())
+                        .concatWith(Mono.defer(() -> thumbnailRepository.saveBackfillCheckpoint(BACKFILL_CHECKPOINT, batch.getLast().imageId()))
+                                .doOnSuccess(ignored -> log.info("Missing thumbnails generated up to image {}", batch.getLast().imageId()))
+                                .then(Mono.empty())), 1);
+    }
+
+    public Mono<Void> generateMissingPlaceholders() {
+        AtomicLong cursor = new AtomicLong();
+
+        return Mono.defer(() -> imageService.findIdsWithoutPlaceholder(cursor.get(), backfillBatchSize)
+                        .collectList()
+                        .doOnNext(batch -> {
+                            if (!batch.isEmpty()) {
+                                cursor.set(batch.getLast());
+                            }
+                        }))
+                .repeat()
+                .takeWhile(batch -> !batch.isEmpty())
+                .concatMap(batch -> Flux.fromIterable(batch)
+                        .flatMap(this::generatePlaceholder, renderScheduler.getThreads()), 1)
+                .count()
+                .doOnNext(generated -> log.info("Generated {} missing placeholders", generated))
+                .then();
+    }
 
-        return imageService.findAllImages()
-                .flatMap(image -> generateMissingThumbnailsForImage(image)
-                        .map(thumbnail -> Tuples.of(image, thumbnail))
-                );
+    private Mono<Boolean> generatePlaceholder(Long imageId) {
+        return thumbnailRepository.findByImageIdAndType(imageId, ThumbnailType.SMALL)
+                .flatMap(this::loadData)
+                .filter(small -> small.getData() != null)
+                .flatMap(small -> thumbnailConverter.generatePlaceholder(small.getData()))
+                .flatMap(placeholder -> imageService.updatePlaceholder(imageId, placeholder))
+                .onErrorResume(error -> {
+                    log.warn("Unable to generate placeholder for image {}: {}", imageId, error.getMessage());
+                    return Mono.empty();
+                });
     }
 
-    // !TODO Transfer this logic to Database
-    private Flux<Thumbnail> generateMissingThumbnailsForImage(Image image) {
-        return Flux.fromStream(Stream.of(ThumbnailType.SMALL, ThumbnailType.MEDIUM, ThumbnailType.BIG))
-                .flatMap(type -> thumbnailRepository.findByImageIdAndType(image.getId(), type)
-                        .switchIfEmpty(thumbnailConverter.generateThumbnail(image, type.getWidth(), type.getHeight(), type)
-                                .flatMap(thumbnail -> {
-                                    thumbnail.setImageId(image.getId());
-                                    return this.save(thumbnail);
-                                })));
+    private Set<ThumbnailType> toThumbnailTypes(MissingThumbnails missing) {
+        return Arrays.stream(missing.types())
+                .map(ThumbnailType::valueOf)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(ThumbnailType.class)));
+    }
+
+    private Flux<Thumbnail> generateMissingThumbnailsForImage(Image image, Set<ThumbnailType> missingTypes) {
+        return thumbnailConverter.generateThumbnailSet(image, missingTypes)
+                .flatMapIterable(thumbnails -> thumbnails)
+                .flatMapSequential(thumbnail -> {
+                    thumbnail.setImageId(image.getId());
+                    thumbnail.setFolderId(image.getFolderId());
+                    return this.save(thumbnail);
+                })
+                .concatWith(savePlaceholder(image).then(Mono.empty()));
     }
 
     public Mono<Thumbnail> save(Thumbnail thumbnail) {
-        return thumbnailRepository.save(thumbnail);
+        return blobStore.put(thumbnail.getData())
+                .flatMap(hash -> {
+                    thumbnail.setDataHash(hash);
+                    thumbnail.setSize((long) thumbnail.getData().length);
+                    return thumbnailBatchWriter.save(thumbnail);
+                })
+                .flatMap(saved -> thumbnailVolumeStore.write(saved.getType(), saved.getId(), saved.getData())
+                        .thenReturn(saved));
     }
 
     public Flux<Thumbnail> saveThumbnailsForImage(Image savedImage) {
         return thumbnailConverter.generateAllThumbnails(savedImage)
                 .flatMapSequential(thumbnail -> {
                             thumbnail.setImageId(savedImage.getId());
+                            thumbnail.setFolderId(savedImage.getFolderId());
                             return this.save(thumbnail);
                         }
-                );
+                )
+                .concatWith(savePlaceholder(savedImage).then(Mono.empty()));
+    }
+
+    private Mono<Boolean> savePlaceholder(Image image) {
+        return Mono.defer(() -> image.getPlaceholder() != null
+                ? imageService.updatePlaceholder(image)
+                : Mono.empty());
     }
 
     public Flux<Thumbnail> findAllThumbnailsByTypeAndFolder(ThumbnailType type, Pageable pageable, Long folderId) {
         int limit = pageable.getPageSize();
         int offset = (pageable.getPageNumber()-1) * pageable.getPageSize();
         return thumbnailRepository.findByTypeAndFolderPaginated(type, limit, offset, folderId.intValue())
+                .flatMapSequential(this::loadData)
+                .publishOn(Schedulers.parallel());
+    }
+
+    public Flux<Thumbnail> findAllThumbnailsByTypeAndFolderAfter(ThumbnailType type, PageCursor cursor, int limit, Long folderId) {
+        // Thumbnails without an order come last, as in the page-number query.
+        Flux<Thumbnail> thumbnails = cursor.order() == null
+                ? thumbnailRepository.findUnorderedByTypeAndFolderAfter(type, cursor.id(), limit, folderId.intValue())
+                : thumbnailRepository.findByTypeAndFolderAfter(type, cursor.order(), cursor.id(), limit, folderId.intValue())
+                        .concatWith(Flux.defer(() -> thumbnailRepository.findUnorderedByTypeAndFolderAfter(type, 0L, limit, folderId.intValue())))
+                        .take(limit);
+        return thumbnails
+                .flatMapSequential(this::loadData)
                 .publishOn(Schedulers.parallel());
     }
 
@@ -71,19 +177,27 @@ public class ThumbnailService {
         int limit = page * pageSize;
         int offset = 0;
         return thumbnailRepository.findByTypeAndFolderPaginated(type, limit, offset, folderId.intValue())
+                .flatMapSequential(this::loadData)
                 .publishOn(Schedulers.parallel());
     }
 
     public Flux<Thumbnail> findAllThumbnailsByImageId(Long imageId) {
         return thumbnailRepository.findByImageId(imageId)
+                .flatMapSequential(this::loadData)
                 .publishOn(Schedulers.parallel());
     }
 
     public Mono<Thumbnail> findThumbnailByThumbnailId(Long thumbnailId) {
         return thumbnailRepository.findById(thumbnailId)
+                .flatMap(this::loadData)
                 .publishOn(Schedulers.parallel());
     }
 
+    public Mono<Long> findImageIdByThumbnailId(Long thumbnailId) {
+        return thumbnailRepository.findImageIdById(thumbnailId)
+                .switchIfEmpty(Mono.error(new NoSuchElementException("Thumbnail with ID " + thumbnailId + " not found")));
+    }
+
     public Mono<Image> findImageByThumbnailId(Long thumbnailId) {
         return findThumbnailByThumbnailId(thumbnailId)
                 .flatMap(thumbnail -> imageService.findById(thumbnail.getImageId())
@@ -92,14 +206,43 @@ public class ThumbnailService {
     }
 
     public Flux<Thumbnail> removeAllThumbnailsByImageId(Long imageId) {
-        return thumbnailRepository.removeAllByImageId(imageId)
+        return thumbnailRepository.findMetadataByImageId(imageId)
+                .flatMap(metadata -> thumbnailVolumeStore.delete(metadata.type(), metadata.id()))
+                .thenMany(thumbnailRepository.removeAllByImageId(imageId))
                 .publishOn(Schedulers.parallel());
     }
 
+    public Mono<Void> removeThumbnailData(FolderTreeDeletion deletion) {
+        return Flux.range(0, deletion.thumbnailIds().length)
+                .flatMap(index -> thumbnailVolumeStore.delete(
+                        ThumbnailType.valueOf(deletion.thumbnailTypes()[index]), deletion.thumbnailIds()[index]))
+                .then();
+    }
+
     public Mono<Boolean> updateThumbnailOrder(Thumbnail thumbnail, long thumbnailOrder) {
         thumbnail.setThumbnailOrder(thumbnailOrder);
         return thumbnailRepository.updateThumbnailOrder(thumbnail.getId(), thumbnailOrder)
                 .map(rowsUpdated -> rowsUpdated > 0)
                 .doOnError(error -> log.error("Error updating thumbnail order for thumbnailId: {}", thumbnail.getId(), error));
     }
+
+    public Mono<Boolean> updateThumbnailOrderByImageId(Long imageId, long thumbnailOrder) {
+        return thumbnailRepository.updateThumbnailOrderByImageId(imageId, thumbnailOrder)
+                .map(rowsUpdated -> rowsUpdated > 0)
+                .doOnError(error -> log.error("Error updating thumbnail order for imageId: {}", imageId, error));
+    }
+
+    private Mono<Thumbnail> loadData(Thumbnail thumbnail) {
+        if (thumbnail.getDataHash() == null) {
+            return Mono.just(thumbnail);
+        }
+        return thumbnailVolumeStore.read(thumbnail.getType(), thumbnail.getId())
+                .switchIfEmpty(Mono.defer(() -> blobStore.get(thumbnail.getDataHash())
+                        .flatMap(data -> thumbnailVolumeStore.write(thumbnail.getType(), thumbnail.getId(), data)
+                                .thenReturn(data))))
+                .map(data -> {
+                    thumbnail.setData(data);
+                    return thumbnail;
+                });
+    }
 }
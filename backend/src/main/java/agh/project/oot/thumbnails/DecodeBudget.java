@@ -0,0 +1,107 @@
+package agh.project.oot.thumbnails;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Component
+public class DecodeBudget {
+    private final long budgetBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long reservedBytes;
+    private long peakReservedBytes;
+
+    public DecodeBudget(@Value("${converter.decodeBudget}") long budgetBytes, MeterRegistry meterRegistry) {
+        this.budgetBytes = budgetBytes;
+
+        Gauge.builder("thumbnail.decode.budget", () -> this.budgetBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("thumbnail.decode.reserved", this::getReservedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("thumbnail.decode.reserved.peak", this::getPeakReservedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public Reservation reserve(long bytes) throws IOException {
+        if (bytes > budgetBytes) {
+            throw new IOException("Image needs " + bytes + " bytes to decode, which exceeds the decode budget of " + budgetBytes + " bytes");
+        }
+
+        lock.lock();
+        try {
+            while (reservedBytes + bytes > budgetBytes) {
+                log.debug("Waiting for {} bytes of decode budget, {} bytes reserved", bytes, reservedBytes);
+                released.await();
+            }
+            reservedBytes += bytes;
+            peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decode budget");
+        } finally {
+            lock.unlock();
+        }
+        return new Reservation(bytes);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPeakReservedBytes() {
+        lock.lock();
+        try {
+            return peakReservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            reservedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public final class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean closed;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package agh.project.oot.thumbnails;
+
+import java.awt.image.BufferedImage;
+
+public record DecodedImage(BufferedImage image, String formatName) {
+}
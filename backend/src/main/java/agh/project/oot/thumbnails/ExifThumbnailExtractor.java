@@ -0,0 +1,86 @@
+package agh.project.oot.thumbnails;
+
+import agh.project.oot.thumbnails.engine.ThumbnailEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.common.ImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.tiff.TiffField;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.springframework.stereotype.Component;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Optional;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExifThumbnailExtractor {
+    private static final double ASPECT_RATIO_TOLERANCE = 0.02;
+
+    private final ImageDecoder imageDecoder;
+
+    public Optional<BufferedImage> extract(byte[] data, int width, int height) throws IOException {
+        if (!isJpeg(data)) {
+            return Optional.empty();
+        }
+
+        try {
+            ImageMetadata metadata = Imaging.getMetadata(data);
+            if (!(metadata instanceof JpegImageMetadata jpegMetadata)) {
+                return Optional.empty();
+            }
+
+            BufferedImage embedded = jpegMetadata.getEXIFThumbnail();
+            if (embedded == null) {
+                return Optional.empty();
+            }
+
+            ImageHeader header = imageDecoder.readHeader(data);
+            if (!hasSameAspectRatio(header, embedded)) {
+                log.debug("Skipping embedded thumbnail {}x{} with different aspect ratio than {}x{} original",
+                        embedded.getWidth(), embedded.getHeight(), header.width(), header.height());
+                return Optional.empty();
+            }
+
+            Orientation orientation = readOrientation(jpegMetadata);
+            boolean transposed = ImageDecoder.isTransposed(orientation);
+            if (orientation != null && orientation != Orientation.TOP_LEFT) {
+                embedded = ExifFilterUtils.getFilterForOrientation(orientation).apply(embedded);
+            }
+
+            Dimension required = ThumbnailEngine.fitWithin(
+                    transposed ? header.height() : header.width(),
+                    transposed ? header.width() : header.height(),
+                    width, height);
+            if (embedded.getWidth() < required.width || embedded.getHeight() < required.height) {
+                return Optional.empty();
+            }
+            return Optional.of(embedded);
+        } catch (ImageReadException error) {
+            log.debug("Unable to read EXIF metadata: {}", error.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private boolean isJpeg(byte[] data) {
+        return data != null && data.length > 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8;
+    }
+
+    private boolean hasSameAspectRatio(ImageHeader header, BufferedImage embedded) {
+        double original = (double) header.width() / header.height();
+        double thumbnail = (double) embedded.getWidth() / embedded.getHeight();
+        return Math.abs(original - thumbnail) / original <= ASPECT_RATIO_TOLERANCE;
+    }
+
+    private Orientation readOrientation(JpegImageMetadata metadata) throws ImageReadException {
+        TiffField field = metadata.findEXIFValueWithExactMatch(TiffTagConstants.TIFF_TAG_ORIENTATION);
+        return field == null ? null : Orientation.typeOf(field.getIntValue());
+    }
+}
@@ -0,0 +1,123 @@
+package agh.project.oot.thumbnails;
+
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+@Slf4j
+@Component
+public class ImageDecoder {
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final Set<String> SUBSAMPLED_FORMATS = Set.of("jpeg", "png");
+    private static final Set<String> EXIF_FORMATS = Set.of("jpeg");
+    private static final Set<Orientation> TRANSPOSED_ORIENTATIONS = Set.of(
+            Orientation.LEFT_TOP, Orientation.RIGHT_TOP, Orientation.RIGHT_BOTTOM, Orientation.LEFT_BOTTOM);
+
+    public DecodedImage decode(byte[] data, int targetWidth, int targetHeight) throws IOException {
+        try (ImageInputStream input = openStream(data)) {
+            ImageReader reader = findReader(input);
+            try {
+                return read(reader, input, targetWidth, targetHeight);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public ImageHeader readHeader(byte[] data) throws IOException {
+        try (ImageInputStream input = openStream(data)) {
+            ImageReader reader = findReader(input);
+            try {
+                reader.setInput(input, true, true);
+                return new ImageHeader(reader.getWidth(0), reader.getHeight(0), reader.getFormatName().toLowerCase());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public DecodedImage read(ImageReader reader, ImageInputStream input, int targetWidth, int targetHeight) throws IOException {
+        reader.setInput(input);
+        String formatName = reader.getFormatName().toLowerCase();
+        Orientation orientation = readOrientation(reader, formatName);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (SUBSAMPLED_FORMATS.contains(formatName)) {
+            boolean transposed = isTransposed(orientation);
+            int width = transposed ? reader.getHeight(0) : reader.getWidth(0);
+            int height = transposed ? reader.getWidth(0) : reader.getHeight(0);
+            int factor = subsamplingFactor(width, height, targetWidth, targetHeight);
+            if (factor > 1) {
+                log.debug("Decoding {}x{} {} image with subsampling factor {}", width, height, formatName, factor);
+                param.setSourceSubsampling(factor, factor, 0, 0);
+            }
+        }
+
+        BufferedImage image = reader.read(0, param);
+        if (orientation != null && orientation != Orientation.TOP_LEFT) {
+            image = ExifFilterUtils.getFilterForOrientation(orientation).apply(image);
+        }
+        return new DecodedImage(image, formatName);
+    }
+
+    public ImageInputStream openStream(byte[] data) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data));
+        if (input == null) {
+            throw new IOException("Unable to open image stream");
+        }
+        return input;
+    }
+
+    public long estimateDecodedBytes(ImageHeader header, int targetWidth, int targetHeight) {
+        int factor = SUBSAMPLED_FORMATS.contains(header.formatName())
+                ? Math.min(subsamplingFactor(header.width(), header.height(), targetWidth, targetHeight),
+                           subsamplingFactor(header.height(), header.width(), targetWidth, targetHeight))
+                : 1;
+        long width = (header.width() + factor - 1) / factor;
+        long height = (header.height() + factor - 1) / factor;
+        return width * height * BYTES_PER_PIXEL;
+    }
+
+    static boolean isTransposed(Orientation orientation) {
+        return orientation != null && TRANSPOSED_ORIENTATIONS.contains(orientation);
+    }
+
+    static int subsamplingFactor(int width, int height, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        return Math.max(1, Math.max(width / targetWidth, height / targetHeight));
+    }
+
+    private Orientation readOrientation(ImageReader reader, String formatName) throws IOException {
+        if (!EXIF_FORMATS.contains(formatName)) {
+            return Orientation.TOP_LEFT;
+        }
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (IllegalArgumentException error) {
+            log.debug("Unable to read EXIF orientation of {} image", formatName, error);
+            return Orientation.TOP_LEFT;
+        }
+    }
+
+    private ImageReader findReader(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("No image reader found for the provided data");
+        }
+        return readers.next();
+    }
+}
@@ -0,0 +1,4 @@
+package agh.project.oot.thumbnails;
+
+public record ImageHeader(int width, int height, String formatName) {
+}
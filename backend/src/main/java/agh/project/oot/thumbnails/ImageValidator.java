@@ -0,0 +1,78 @@
+package agh.project.oot.thumbnails;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageValidator {
+    private static final List<byte[]> SIGNATURES = List.of(
+            new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},
+            new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'},
+            new byte[]{'G', 'I', 'F', '8', '7', 'a'},
+            new byte[]{'G', 'I', 'F', '8', '9', 'a'},
+            new byte[]{'B', 'M'},
+            new byte[]{'I', 'I', 42, 0},
+            new byte[]{'M', 'M', 0, 42}
+    );
+
+    private final ImageDecoder imageDecoder;
+    private final DecodeBudget decodeBudget;
+
+    @Value("${thumbnail.width}")
+    private int thumbnailWidth;
+
+    @Value("${thumbnail.height}")
+    private int thumbnailHeight;
+
+    @Value("${converter.bigThumbnailScale}")
+    private int bigThumbnailScale;
+
+    public boolean isSupported(byte[] data) {
+        if (data == null || !hasKnownSignature(data)) {
+            log.warn("Rejecting file with unknown signature");
+            return false;
+        }
+
+        try {
+            ImageHeader header = imageDecoder.readHeader(data);
+            if (header.width() <= 0 || header.height() <= 0) {
+                log.warn("Rejecting {} image with invalid dimensions {}x{}", header.formatName(), header.width(), header.height());
+                return false;
+            }
+
+            long decodedBytes = imageDecoder.estimateDecodedBytes(header,
+                    thumbnailWidth * bigThumbnailScale, thumbnailHeight * bigThumbnailScale);
+            if (decodedBytes > decodeBudget.getBudgetBytes()) {
+                log.warn("Rejecting {}x{} image that needs {} bytes to decode", header.width(), header.height(), decodedBytes);
+                return false;
+            }
+            return true;
+        } catch (IOException | RuntimeException error) {
+            log.warn("Rejecting file with unreadable image header: {}", error.getMessage());
+            return false;
+        }
+    }
+
+    private boolean hasKnownSignature(byte[] data) {
+        return SIGNATURES.stream().anyMatch(signature -> startsWith(data, signature));
+    }
+
+    private boolean startsWith(byte[] data, byte[] signature) {
+        if (data.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (data[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
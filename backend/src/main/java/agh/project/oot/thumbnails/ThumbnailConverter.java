@@ -3,21 +3,40 @@ package agh.project.oot.thumbnails;
 import agh.project.oot.model.Image;
 import agh.project.oot.model.Thumbnail;
 import agh.project.oot.model.ThumbnailType;
+import agh.project.oot.thumbnails.engine.ThumbnailEngine;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.coobird.thumbnailator.Thumbnails;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import static agh.project.oot.model.ThumbnailType.*;
 import org.springframework.beans.factory.annotation.Value;
 
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class ThumbnailConverter {
+    private static final String EMBEDDED_THUMBNAIL_FORMAT = "jpeg";
+    private static final int PLACEHOLDER_COMPONENTS_X = 4;
+    private static final int PLACEHOLDER_COMPONENTS_Y = 3;
+
+    private final ThumbnailEngine thumbnailEngine;
+    private final ImageDecoder imageDecoder;
+    private final DecodeBudget decodeBudget;
+    private final ThumbnailRenderScheduler renderScheduler;
+    private final ExifThumbnailExtractor exifThumbnailExtractor;
+    private final ThumbnailEncoder thumbnailEncoder;
 
     @Value("${thumbnail.width}")
     private int thumbnailWidth;
@@ -32,27 +51,113 @@ public class ThumbnailConverter {
     private int bigThumbnailScale;
 
     public Mono<Thumbnail> generateThumbnail(Image image, int width, int height, ThumbnailType type) {
-        return Mono.fromCallable(() -> {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(image.getData());
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        return renderScheduler.render(() -> {
+            try (DecodeBudget.Reservation ignored = reserveDecodeBudget(image, width, height)) {
+                DecodedImage decoded = thumbnailEngine.decode(image.getData(), width, height);
+                return createThumbnail(render(decoded.image(), width, height), decoded.formatName(), type);
+            }
+        }).onErrorMap(this::isRenderFailure, error -> new UnsupportedImageFormatException(error.getMessage(), image.getId()));
+    }
+
+    public Mono<List<Thumbnail>> generateThumbnailSet(Image image) {
+        return generateThumbnailSet(image, EnumSet.allOf(ThumbnailType.class));
+    }
 
-            Thumbnails.of(inputStream)
-                    .size(width, height)
-                    .toOutputStream(outputStream);
+    public Mono<List<Thumbnail>> generateThumbnailSet(Image image, Set<ThumbnailType> types) {
+        if (types.isEmpty()) {
+            return Mono.just(List.of());
+        }
 
-            Thumbnail thumbnail = new Thumbnail();
-            thumbnail.setData(outputStream.toByteArray());
-            thumbnail.setType(type);
+        return renderScheduler.render(() -> {
+            List<ThumbnailType> cascade = types.stream()
+                    .sorted(Comparator.comparingInt(this::scaleOf))
+                    .toList()
+                    .reversed();
+            ThumbnailType largest = cascade.getFirst();
+            try (DecodeBudget.Reservation ignored = reserveDecodeBudget(image, widthOf(largest), heightOf(largest))) {
+                DecodedImage decoded = thumbnailEngine.decode(image.getData(), widthOf(largest), heightOf(largest));
 
-            return thumbnail;
-        }).onErrorResume(error -> Mono.error(new UnsupportedImageFormatException(error.getMessage(), image.getId())));
+                BufferedImage current = decoded.image();
+                List<Thumbnail> thumbnails = new ArrayList<>(cascade.size());
+                for (ThumbnailType type : cascade) {
+                    current = render(current, widthOf(type), heightOf(type));
+                    if (type == SMALL) {
+                        image.setPlaceholder(encodePlaceholder(current));
+                    }
+                    thumbnails.addFirst(createThumbnail(current, decoded.formatName(), type));
+                }
+                return thumbnails;
+            }
+        }).onErrorMap(this::isRenderFailure, error -> new UnsupportedImageFormatException(error.getMessage(), image.getId()));
     }
 
     public Flux<Thumbnail> generateAllThumbnails(Image image) {
-        return Flux.concat(
-                generateThumbnail(image, thumbnailWidth, thumbnailHeight, SMALL),
-                generateThumbnail(image, thumbnailWidth * mediumThumbnailScale, thumbnailHeight * mediumThumbnailScale, MEDIUM),
-                generateThumbnail(image, thumbnailWidth * bigThumbnailScale, thumbnailHeight * bigThumbnailScale, BIG)
-        );
+        return generateEmbeddedThumbnail(image)
+                .flatMapMany(small -> Flux.concat(
+                        Mono.just(small),
+                        generateThumbnailSet(image, EnumSet.of(MEDIUM, BIG)).flatMapIterable(thumbnails -> thumbnails)))
+                .switchIfEmpty(generateThumbnailSet(image).flatMapIterable(thumbnails -> thumbnails));
+    }
+
+    public Mono<String> generatePlaceholder(byte[] smallThumbnailData) {
+        return renderScheduler.render(() -> encodePlaceholder(
+                imageDecoder.decode(smallThumbnailData, thumbnailWidth, thumbnailHeight).image()));
+    }
+
+    private Mono<Thumbnail> generateEmbeddedThumbnail(Image image) {
+        return renderScheduler.render(() -> {
+                    Optional<BufferedImage> embedded = exifThumbnailExtractor.extract(image.getData(), thumbnailWidth, thumbnailHeight);
+                    if (embedded.isEmpty()) {
+                        return null;
+                    }
+                    BufferedImage small = render(embedded.get(), thumbnailWidth, thumbnailHeight);
+                    image.setPlaceholder(encodePlaceholder(small));
+                    return createThumbnail(small, EMBEDDED_THUMBNAIL_FORMAT, SMALL);
+                })
+                .onErrorResume(this::isRenderFailure, error -> {
+                    log.debug("Falling back to full decode for image {}: {}", image.getId(), error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private DecodeBudget.Reservation reserveDecodeBudget(Image image, int width, int height) throws IOException {
+        ImageHeader header = imageDecoder.readHeader(image.getData());
+        return decodeBudget.reserve(imageDecoder.estimateDecodedBytes(header, width, height));
+    }
+
+    private int scaleOf(ThumbnailType type) {
+        return switch (type) {
+            case SMALL -> 1;
+            case MEDIUM -> mediumThumbnailScale;
+            case BIG -> bigThumbnailScale;
+        };
+    }
+
+    private int widthOf(ThumbnailType type) {
+        return thumbnailWidth * scaleOf(type);
+    }
+
+    private int heightOf(ThumbnailType type) {
+        return thumbnailHeight * scaleOf(type);
+    }
+
+    private boolean isRenderFailure(Throwable error) {
+        return !(error instanceof RejectedExecutionException);
+    }
+
+    private BufferedImage render(BufferedImage source, int width, int height) throws IOException {
+        return thumbnailEngine.resize(source, width, height);
+    }
+
+    private String encodePlaceholder(BufferedImage small) {
+        return BlurHashEncoder.encode(small, PLACEHOLDER_COMPONENTS_X, PLACEHOLDER_COMPONENTS_Y);
+    }
+
+    private Thumbnail createThumbnail(BufferedImage image, String formatName, ThumbnailType type) throws IOException {
+        Thumbnail thumbnail = new Thumbnail();
+        thumbnail.setData(thumbnailEncoder.encode(image, formatName, type));
+        thumbnail.setType(type);
+
+        return thumbnail;
     }
 }
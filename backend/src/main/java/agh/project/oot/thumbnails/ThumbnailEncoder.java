@@ -0,0 +1,183 @@
+package agh.project.oot.thumbnails;
+
+import agh.project.oot.model.ThumbnailType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class ThumbnailEncoder {
+    private static final String SOURCE_FORMAT = "source";
+    private static final String LOSSLESS_FORMAT = "png";
+    private static final String LOSSY_FORMAT = "jpeg";
+    private static final Set<String> ALPHA_FORMATS = Set.of("png", "gif");
+    private static final double DEFAULT_QUALITY = 0.85;
+
+    private final Map<String, String> outputFormats;
+    private final Map<String, Double> outputQualities;
+    private final Map<String, Boolean> progressiveOutputs;
+    private final int savingsSampleRate;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong encodedCount = new AtomicLong();
+    private final Map<EncodedSizeKey, DistributionSummary> encodedSizes = new ConcurrentHashMap<>();
+    private final Counter sampledBytes;
+    private final Counter sampledBaselineBytes;
+
+    public ThumbnailEncoder(@Value("#{${converter.outputFormat}}") Map<String, String> outputFormats,
+                            @Value("#{${converter.outputQuality}}") Map<String, Double> outputQualities,
+                            @Value("#{${converter.progressive}}") Map<String, Boolean> progressiveOutputs,
+                            @Value("${converter.savingsSampleRate}") int savingsSampleRate,
+                            MeterRegistry meterRegistry) {
+        this.outputFormats = outputFormats;
+        this.outputQualities = outputQualities;
+        this.progressiveOutputs = progressiveOutputs;
+        this.savingsSampleRate = savingsSampleRate;
+        this.meterRegistry = meterRegistry;
+
+        this.sampledBytes = Counter.builder("thumbnail.encoded.sampled")
+                .description("Encoded size of thumbnails sampled for the savings report")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.sampledBaselineBytes = Counter.builder("thumbnail.encoded.sampled.baseline")
+                .description("Size the sampled thumbnails would have in their source format")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public byte[] encode(BufferedImage image, String sourceFormat, ThumbnailType type) throws IOException {
+        String formatName = resolveFormat(image, sourceFormat, type);
+        byte[] data = write(image, formatName,
+                outputQualities.getOrDefault(type.name(), DEFAULT_QUALITY),
+                progressiveOutputs.getOrDefault(type.name(), false));
+
+        encodedSizes.computeIfAbsent(new EncodedSizeKey(type, formatName), key -> DistributionSummary.builder("thumbnail.encoded.size")
+                        .baseUnit("bytes")
+                        .tags("type", key.type().name(), "format", key.formatName())
+                        .register(meterRegistry))
+                .record(data.length);
+
+        if (savingsSampleRate > 0 && encodedCount.incrementAndGet() % savingsSampleRate == 0) {
+            sampledBytes.increment(data.length);
+            sampledBaselineBytes.increment(writeBaseline(image, sourceFormat).length);
+        }
+        return data;
+    }
+
+    @Scheduled(fixedRateString = "${converter.savingsReportInterval}", initialDelayString = "${converter.savingsReportInterval}")
+    public void reportSavings() {
+        double baseline = sampledBaselineBytes.count();
+        if (baseline == 0) {
+            return;
+        }
+        double saved = baseline - sampledBytes.count();
+        log.info("Thumbnail encoding saved {} of {} sampled bytes ({}%) across {} encoded thumbnails",
+                (long) saved, (long) baseline, Math.round(saved * 100 / baseline), encodedCount.get());
+    }
+
+    String resolveFormat(BufferedImage image, String sourceFormat, ThumbnailType type) {
+        String configured = outputFormats.getOrDefault(type.name(), SOURCE_FORMAT).toLowerCase();
+        String formatName = SOURCE_FORMAT.equals(configured) ? sourceFormat : configured;
+
+        boolean transparent = hasTransparentPixels(image);
+        if (transparent && !ALPHA_FORMATS.contains(formatName)) {
+            return LOSSLESS_FORMAT;
+        }
+        if (!ImageIO.getImageWritersByFormatName(formatName).hasNext()) {
+            log.debug("No image writer for {}, falling back to {}", formatName, LOSSY_FORMAT);
+            return transparent ? LOSSLESS_FORMAT : LOSSY_FORMAT;
+        }
+        return formatName;
+    }
+
+    // an alpha channel alone does not need a lossless format, opaque RGBA screenshots are common
+    private static boolean hasTransparentPixels(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return false;
+        }
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int pixel : row) {
+                if (pixel >>> 24 != 0xFF) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private byte[] writeBaseline(BufferedImage image, String sourceFormat) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, sourceFormat, outputStream)) {
+            outputStream.reset();
+            ImageIO.write(image, LOSSLESS_FORMAT, outputStream);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private byte[] write(BufferedImage image, String formatName, double quality, boolean progressive) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && !LOSSLESS_FORMAT.equals(formatName)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality((float) quality);
+            }
+            if (param.canWriteProgressive()) {
+                // Interlaced PNGs are larger and thumbnails are too small to benefit from progressive rendering.
+                boolean interlaced = progressive && !LOSSLESS_FORMAT.equals(formatName);
+                param.setProgressiveMode(interlaced ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+            }
+            writer.write(null, new IIOImage(toWritableImage(image, formatName), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private BufferedImage toWritableImage(BufferedImage image, String formatName) {
+        if (!LOSSY_FORMAT.equals(formatName) || image.getType() == BufferedImage.TYPE_INT_RGB
+                || image.getType() == BufferedImage.TYPE_3BYTE_BGR || image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    private record EncodedSizeKey(ThumbnailType type, String formatName) {
+    }
+}
@@ -0,0 +1,98 @@
+package agh.project.oot.thumbnails;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Component
+public class ThumbnailRenderScheduler implements DisposableBean {
+    private static final String NAME = "thumbnail-render";
+    private static final int MAX_REJECTION_RETRIES = 20;
+    private static final Duration MIN_REJECTION_BACKOFF = Duration.ofMillis(50);
+    private static final Duration MAX_REJECTION_BACKOFF = Duration.ofSeconds(2);
+
+    private final ThreadPoolExecutor executor;
+    @Getter
+    private final Scheduler scheduler;
+    @Getter
+    private final int threads;
+    @Getter
+    private final int capacity;
+
+    public ThumbnailRenderScheduler(@Value("${converter.renderThreads}") int renderThreads,
+                                    @Value("${converter.renderQueueCapacity}") int renderQueueCapacity,
+                                    MeterRegistry meterRegistry) {
+        this.threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        this.capacity = threads + renderQueueCapacity;
+        Counter rejectedTasks = Counter.builder(NAME + ".rejected")
+                .description("Render tasks rejected because the render queue was full")
+                .register(meterRegistry);
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(renderQueueCapacity),
+                renderThreadFactory(),
+                (task, pool) -> {
+                    rejectedTasks.increment();
+                    throw new RejectedExecutionException("Thumbnail render queue is full");
+                });
+        this.scheduler = Schedulers.fromExecutorService(executor, NAME);
+
+        new ExecutorServiceMetrics(executor, NAME, Tags.empty()).bindTo(meterRegistry);
+        log.info("Thumbnail rendering uses {} threads with a queue of {} tasks", threads, renderQueueCapacity);
+    }
+
+    public <T> Mono<T> render(Callable<T> task) {
+        return Mono.fromCallable(task)
+                .subscribeOn(scheduler)
+                .retryWhen(Retry.backoff(MAX_REJECTION_RETRIES, MIN_REJECTION_BACKOFF)
+                        .maxBackoff(MAX_REJECTION_BACKOFF)
+                        .filter(RejectedExecutionException.class::isInstance)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    private static ThreadFactory renderThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, NAME + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package agh.project.oot.thumbnails.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+@Slf4j
+public class BoxFilterResizer {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private final RowAccumulator rowAccumulator;
+
+    BoxFilterResizer(RowAccumulator rowAccumulator) {
+        this.rowAccumulator = rowAccumulator;
+    }
+
+    public static BoxFilterResizer create() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            log.info("Box filter resize uses the {} module", VECTOR_MODULE);
+            return new BoxFilterResizer(new VectorRowAccumulator());
+        }
+        log.info("Module {} is not available, box filter resize falls back to the scalar kernel", VECTOR_MODULE);
+        return new BoxFilterResizer(new ScalarRowAccumulator());
+    }
+
+    public static BoxFilterResizer scalar() {
+        return new BoxFilterResizer(new ScalarRowAccumulator());
+    }
+
+    public BufferedImage resize(BufferedImage source, int width, int height) {
+        Dimension target = ThumbnailEngine.fitWithin(source.getWidth(), source.getHeight(), width, height);
+        BufferedImage packed = toPackedInt(source);
+        int sourceWidth = packed.getWidth();
+        int sourceHeight = packed.getHeight();
+        int[] pixels = ((DataBufferInt) packed.getRaster().getDataBuffer()).getData();
+
+        BufferedImage result = new BufferedImage(target.width, target.height, packed.getType());
+        int[] output = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        boolean opaque = packed.getType() == BufferedImage.TYPE_INT_RGB;
+
+        Span[] columns = spans(sourceWidth, target.width);
+        Span[] rows = spans(sourceHeight, target.height);
+        float[][] accumulators = new float[RowAccumulator.CHANNEL_SHIFTS.length][sourceWidth];
+
+        for (int y = 0; y < target.height; y++) {
+            Span row = rows[y];
+            for (float[] accumulator : accumulators) {
+                Arrays.fill(accumulator, 0f);
+            }
+            for (int i = 0; i < row.weights.length; i++) {
+                rowAccumulator.accumulate(pixels, (row.start + i) * sourceWidth, sourceWidth, row.weights[i], accumulators);
+            }
+
+            for (int x = 0; x < target.width; x++) {
+                Span column = columns[x];
+                float norm = 1f / (column.extent * row.extent);
+                int pixel = 0;
+                for (int channel = 0; channel < accumulators.length; channel++) {
+                    float sum = 0f;
+                    for (int i = 0; i < column.weights.length; i++) {
+                        sum += accumulators[channel][column.start + i] * column.weights[i];
+                    }
+                    int value = opaque && channel == 0 ? 0xFF : Math.min(255, Math.round(sum * norm));
+                    pixel |= value << RowAccumulator.CHANNEL_SHIFTS[channel];
+                }
+                output[y * target.width + x] = pixel;
+            }
+        }
+        return result;
+    }
+
+    private static BufferedImage toPackedInt(BufferedImage source) {
+        int type = source.getType();
+        boolean packed = type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB_PRE;
+        if (packed && source.getRaster().getDataBuffer().getSize() == source.getWidth() * source.getHeight()) {
+            return source;
+        }
+
+        int packedType = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_RGB;
+        BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), packedType);
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(source, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return converted;
+    }
+
+    private static Span[] spans(int sourceSize, int targetSize) {
+        double scale = (double) sourceSize / targetSize;
+        Span[] spans = new Span[targetSize];
+        for (int i = 0; i < targetSize; i++) {
+            double from = i * scale;
+            double to = Math.min(sourceSize, (i + 1) * scale);
+            int start = (int) Math.floor(from);
+            int end = Math.min(sourceSize, (int) Math.ceil(to));
+            float[] weights = new float[Math.max(1, end - start)];
+            for (int j = 0; j < weights.length; j++) {
+                weights[j] = (float) (Math.min(to, start + j + 1) - Math.max(from, start + j));
+            }
+            spans[i] = new Span(start, weights, (float) (to - from));
+        }
+        return spans;
+    }
+
+    private record Span(int start, float[] weights, float extent) {
+    }
+}
@@ -0,0 +1,62 @@
+package agh.project.oot.thumbnails.engine;
+
+import agh.project.oot.thumbnails.DecodedImage;
+import agh.project.oot.thumbnails.ImageDecoder;
+import lombok.RequiredArgsConstructor;
+
+import javax.imageio.ImageReader;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+@RequiredArgsConstructor
+public class ImageIoEngine implements ThumbnailEngine {
+    private final Map<ImageReaderSpi, Queue<ImageReader>> readerPool = new ConcurrentHashMap<>();
+    private final ImageDecoder imageDecoder;
+
+    @Override
+    public DecodedImage decode(byte[] data, int targetWidth, int targetHeight) throws IOException {
+        try (ImageInputStream input = imageDecoder.openStream(data)) {
+            ImageReaderSpi provider = findProvider(input);
+            Queue<ImageReader> readers = readerPool.computeIfAbsent(provider, spi -> new ConcurrentLinkedQueue<>());
+            ImageReader reader = readers.poll();
+            if (reader == null) {
+                reader = provider.createReaderInstance();
+            }
+
+            try {
+                return imageDecoder.read(reader, input, targetWidth, targetHeight);
+            } finally {
+                reader.reset();
+                readers.offer(reader);
+            }
+        }
+    }
+
+    @Override
+    public BufferedImage resize(BufferedImage source, int width, int height) {
+        Dimension target = ThumbnailEngine.fitWithin(source.getWidth(), source.getHeight(), width, height);
+        return ThumbnailEngine.draw(source, target.width, target.height, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    private ImageReaderSpi findProvider(ImageInputStream input) throws IOException {
+        Iterator<ImageReaderSpi> providers = IIORegistry.getDefaultInstance()
+                .getServiceProviders(ImageReaderSpi.class, true);
+        while (providers.hasNext()) {
+            ImageReaderSpi provider = providers.next();
+            if (provider.canDecodeInput(input)) {
+                return provider;
+            }
+        }
+        throw new IOException("No image reader found for the provided data");
+    }
+}
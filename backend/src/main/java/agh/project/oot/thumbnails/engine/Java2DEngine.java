@@ -0,0 +1,36 @@
+package agh.project.oot.thumbnails.engine;
+
+import agh.project.oot.thumbnails.DecodedImage;
+import agh.project.oot.thumbnails.ImageDecoder;
+import lombok.RequiredArgsConstructor;
+
+import java.awt.Dimension;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+@RequiredArgsConstructor
+public class Java2DEngine implements ThumbnailEngine {
+    private final ImageDecoder imageDecoder;
+
+    @Override
+    public DecodedImage decode(byte[] data, int targetWidth, int targetHeight) throws IOException {
+        return imageDecoder.decode(data, targetWidth, targetHeight);
+    }
+
+    @Override
+    public BufferedImage resize(BufferedImage source, int width, int height) {
+        Dimension target = ThumbnailEngine.fitWithin(source.getWidth(), source.getHeight(), width, height);
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+
+        do {
+            currentWidth = currentWidth > target.width ? Math.max(currentWidth / 2, target.width) : target.width;
+            currentHeight = currentHeight > target.height ? Math.max(currentHeight / 2, target.height) : target.height;
+            current = ThumbnailEngine.draw(current, currentWidth, currentHeight, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        } while (currentWidth != target.width || currentHeight != target.height);
+
+        return current;
+    }
+}
@@ -0,0 +1,7 @@
+package agh.project.oot.thumbnails.engine;
+
+interface RowAccumulator {
+    int[] CHANNEL_SHIFTS = {24, 16, 8, 0};
+
+    void accumulate(int[] pixels, int offset, int width, float weight, float[][] accumulators);
+}
@@ -0,0 +1,19 @@
+package agh.project.oot.thumbnails.engine;
+
+final class ScalarRowAccumulator implements RowAccumulator {
+
+    @Override
+    public void accumulate(int[] pixels, int offset, int width, float weight, float[][] accumulators) {
+        accumulate(pixels, offset, 0, width, weight, accumulators);
+    }
+
+    static void accumulate(int[] pixels, int offset, int from, int width, float weight, float[][] accumulators) {
+        for (int channel = 0; channel < CHANNEL_SHIFTS.length; channel++) {
+            int shift = CHANNEL_SHIFTS[channel];
+            float[] accumulator = accumulators[channel];
+            for (int x = from; x < width; x++) {
+                accumulator[x] += ((pixels[offset + x] >>> shift) & 0xFF) * weight;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package agh.project.oot.thumbnails.engine;
+
+import agh.project.oot.thumbnails.DecodedImage;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+public interface ThumbnailEngine {
+    DecodedImage decode(byte[] data, int targetWidth, int targetHeight) throws IOException;
+
+    BufferedImage resize(BufferedImage source, int width, int height) throws IOException;
+
+    static Dimension fitWithin(int sourceWidth, int sourceHeight, int width, int height) {
+        double scale = Math.min((double) width / sourceWidth, (double) height / sourceHeight);
+        return new Dimension(
+                Math.max(1, (int) Math.round(sourceWidth * scale)),
+                Math.max(1, (int) Math.round(sourceHeight * scale)));
+    }
+
+    static BufferedImage draw(BufferedImage source, int width, int height, Object interpolation) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,26 @@
+package agh.project.oot.thumbnails.engine;
+
+import agh.project.oot.thumbnails.DecodedImage;
+import agh.project.oot.thumbnails.ImageDecoder;
+import lombok.RequiredArgsConstructor;
+import net.coobird.thumbnailator.Thumbnails;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+@RequiredArgsConstructor
+public class ThumbnailatorEngine implements ThumbnailEngine {
+    private final ImageDecoder imageDecoder;
+
+    @Override
+    public DecodedImage decode(byte[] data, int targetWidth, int targetHeight) throws IOException {
+        return imageDecoder.decode(data, targetWidth, targetHeight);
+    }
+
+    @Override
+    public BufferedImage resize(BufferedImage source, int width, int height) throws IOException {
+        return Thumbnails.of(source)
+                .size(width, height)
+                .asBufferedImage();
+    }
+}
@@ -0,0 +1,24 @@
+package agh.project.oot.thumbnails.engine;
+
+import agh.project.oot.thumbnails.DecodedImage;
+import agh.project.oot.thumbnails.ImageDecoder;
+import lombok.RequiredArgsConstructor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+@RequiredArgsConstructor
+public class VectorEngine implements ThumbnailEngine {
+    private final BoxFilterResizer resizer = BoxFilterResizer.create();
+    private final ImageDecoder imageDecoder;
+
+    @Override
+    public DecodedImage decode(byte[] data, int targetWidth, int targetHeight) throws IOException {
+        return imageDecoder.decode(data, targetWidth, targetHeight);
+    }
+
+    @Override
+    public BufferedImage resize(BufferedImage source, int width, int height) {
+        return resizer.resize(source, width, height);
+    }
+}
@@ -0,0 +1,31 @@
+package agh.project.oot.thumbnails.engine;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorRowAccumulator implements RowAccumulator {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void accumulate(int[] pixels, int offset, int width, float weight, float[][] accumulators) {
+        FloatVector weights = FloatVector.broadcast(FLOATS, weight);
+        int bound = INTS.loopBound(width);
+
+        for (int x = 0; x < bound; x += INTS.length()) {
+            IntVector packed = IntVector.fromArray(INTS, pixels, offset + x);
+            for (int channel = 0; channel < CHANNEL_SHIFTS.length; channel++) {
+                FloatVector values = (FloatVector) packed
+                        .lanewise(VectorOperators.LSHR, CHANNEL_SHIFTS[channel])
+                        .and(0xFF)
+                        .convert(VectorOperators.I2F, 0);
+                values.fma(weights, FloatVector.fromArray(FLOATS, accumulators[channel], x))
+                        .intoArray(accumulators[channel], x);
+            }
+        }
+
+        ScalarRowAccumulator.accumulate(pixels, offset, bound, width, weight, accumulators);
+    }
+}
@@ -7,6 +7,7 @@ import agh.project.oot.service.ImageOrderService;
 import agh.project.oot.service.ImageService;
 import agh.project.oot.service.MessageSender;
 import agh.project.oot.service.ThumbnailService;
+import agh.project.oot.thumbnails.ThumbnailRenderScheduler;
 import agh.project.oot.thumbnails.UnsupportedImageFormatException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,13 +28,13 @@ public class ImageProcessor {
     private final ImageOrderService imageOrderService;
     private final SessionRepository sessionRepository;
     private final MessageSender messageSender;
+    private final ThumbnailRenderScheduler renderScheduler;
 
     public void listenForNewImages() {
         imageSink.getSink().asFlux()
-                .flatMap(imageService::findById)
-                .flatMap(image -> thumbnailService.saveThumbnailsForImage(image)
-                        .flatMap(thumbnail -> processImage(thumbnail, image))
-                )
+                .flatMap(imageId -> imageService.findById(imageId)
+                        .flatMapMany(image -> thumbnailService.saveThumbnailsForImage(image)
+                                .flatMap(thumbnail -> processImage(thumbnail, image))), renderScheduler.getCapacity())
                 .publishOn(Schedulers.boundedElastic())
                 .onErrorContinue((error, item) -> handleException(error))
                 .subscribe(
@@ -51,6 +52,7 @@ public class ImageProcessor {
 
         return imageOrderService.initializeImageOrder()
                 .then(processingAndNotifying)
+                .then(thumbnailService.generateMissingPlaceholders())
                 .doOnSuccess(unused -> log.info("Finished notifying clients about all missing thumbnails."))
                 .onErrorContinue((error, item) -> handleException(error));
     }
@@ -58,10 +60,9 @@ public class ImageProcessor {
     public Mono<Void> processImage(Thumbnail thumbnail, Image image) {
         return getImageOrder(image)
                 .switchIfEmpty(
-                        imageOrderService.getNextImageOrder(image.getFolderId())
-                                .flatMap(upgradedImageOrder -> imageService.updateImageOrder(image, upgradedImageOrder)
+                        imageOrderService.assignNextImageOrder(image.getFolderId(),
+                                upgradedImageOrder -> imageService.updateImageOrder(image, upgradedImageOrder)
                                         .doOnError(e -> log.error("Error updating image order: {}", e.getMessage()))
-                                        .thenReturn(upgradedImageOrder)
                                 ))
                 .flatMap(imageOrder ->
                         thumbnailService.updateThumbnailOrder(thumbnail, imageOrder)
@@ -77,15 +78,15 @@ public class ImageProcessor {
 
     public Mono<Void> sendThumbnailForAll(Thumbnail thumbnail) {
         var thumbnailType = thumbnail.getType();
-        return Flux.fromIterable(sessionRepository.getSessions().values())
-                .filter(sessionData -> sessionData.getThumbnailType() == thumbnailType)
-                .flatMap(sessionData -> imageService.findFolderIdByImageId(thumbnail.getImageId())
-                        .map(folderId -> folderId.equals(sessionData.getFolderId()))
-                        .filter(isMatch -> isMatch)
-                        .map(isMatch -> sessionData.getSession())
-                )
-                .flatMap(session ->
-                       messageSender.sendMessage(session, new GetThumbnailsMessage(thumbnailType, Collections.singletonList(IconDto.from(thumbnail))))
+        return imageService.findFolderIdByImageId(thumbnail.getImageId())
+                .zipWhen(folderId -> imageOrderService.positionOf(folderId, thumbnail.getThumbnailOrder())
+                        .switchIfEmpty(Mono.defer(() -> imageService.countImagesBeforeOrder(folderId, thumbnail.getThumbnailOrder()))))
+                .flatMapMany(folderAndPosition -> Flux.fromIterable(sessionRepository.getSessions().values())
+                        .filter(sessionData -> sessionData.getThumbnailType() == thumbnailType)
+                        .filter(sessionData -> folderAndPosition.getT1().equals(sessionData.getFolderId()))
+                        .map(SessionData::getSession)
+                        .flatMap(session -> messageSender.sendMessage(session, new GetThumbnailsMessage(thumbnailType,
+                                Collections.singletonList(IconDto.from(thumbnail, folderAndPosition.getT2())))))
                 )
                 .doOnError(error -> log.error("Failed to send thumbnail: {}", error.getMessage()))
                 .then();
@@ -2,6 +2,7 @@ package agh.project.oot.util;
 
 import agh.project.oot.ResponseStatus;
 import agh.project.oot.messages.*;
+import agh.project.oot.model.PageCursor;
 import agh.project.oot.model.ThumbnailType;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -79,7 +80,8 @@ public class MessageParser {
                         Integer.parseInt((String) messageMap.get("page")),
                         Integer.parseInt((String) messageMap.get("size"))
                 ),
-                Long.valueOf((Integer) messageMap.get("folderId"))
+                Long.valueOf((Integer) messageMap.get("folderId")),
+                parseCursor(messageMap)
         );
     }
 
@@ -116,7 +118,12 @@ public class MessageParser {
                         Integer.parseInt((String) messageMap.get("page")),
                         Integer.parseInt((String) messageMap.get("size"))
                 ),
-                Long.valueOf((Integer) messageMap.get("folderId"))
+                Long.valueOf((Integer) messageMap.get("folderId")),
+                parseCursor(messageMap)
         );
     }
+
+    private PageCursor parseCursor(Map<String, Object> messageMap) {
+        return objectMapper.convertValue(messageMap.get("cursor"), PageCursor.class);
+    }
 }
\ No newline at end of file
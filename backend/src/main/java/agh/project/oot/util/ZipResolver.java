@@ -2,7 +2,9 @@ package agh.project.oot.util;
 
 import agh.project.oot.model.Image;
 import agh.project.oot.service.FolderService;
+import agh.project.oot.thumbnails.ImageValidator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
@@ -10,21 +12,24 @@ import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class ZipResolver {
     private final FolderService folderService;
+    private final ImageValidator imageValidator;
 
-    public Flux<Image> processZipEntries(ZipInputStream zis) {
+    public Flux<Image> processZipEntries(ZipInputStream zis, Consumer<String> rejectedEntryHandler) {
         return Flux.create(sink -> {
             try {
                 ZipEntry entry;
                 while ((entry = zis.getNextEntry()) != null) {
                     if (!entry.isDirectory()) {
-                        processZipEntry(zis, entry, sink);
+                        processZipEntry(zis, entry, sink, rejectedEntryHandler);
                     }
                 }
                 sink.complete();
@@ -34,9 +39,16 @@ public class ZipResolver {
         });
     }
 
-    private void processZipEntry(ZipInputStream zis, ZipEntry entry, FluxSink<Image> sink) throws IOException {
+    private void processZipEntry(ZipInputStream zis, ZipEntry entry, FluxSink<Image> sink,
+                                 Consumer<String> rejectedEntryHandler) throws IOException {
         byte[] fileBytes = zis.readAllBytes();
         String fullPath = entry.getName();
+        if (!imageValidator.isSupported(fileBytes)) {
+            log.warn("Skipping unsupported zip entry: {}", fullPath);
+            rejectedEntryHandler.accept(fullPath);
+            return;
+        }
+
         List<String> folderPath = extractFolderPath(fullPath);
 
         createFolders(folderPath)
@@ -0,0 +1,10 @@
+ALTER TABLE images
+    ADD COLUMN IF NOT EXISTS data_hash CHAR(64),
+    ADD COLUMN IF NOT EXISTS size BIGINT,
+    ADD COLUMN IF NOT EXISTS placeholder VARCHAR(64),
+    ALTER COLUMN data DROP NOT NULL;
+
+ALTER TABLE thumbnails
+    ADD COLUMN IF NOT EXISTS data_hash CHAR(64),
+    ADD COLUMN IF NOT EXISTS size BIGINT,
+    ALTER COLUMN data DROP NOT NULL;
@@ -0,0 +1,26 @@
+-- Merge folders created twice by concurrent uploads before the unique index existed.
+-- Re-parenting the children of a merged folder can expose new duplicates, so repeat until none are left.
+DO $$
+DECLARE
+    merged INT;
+BEGIN
+    LOOP
+        CREATE TEMPORARY TABLE duplicate_folders AS
+        SELECT id, keep_id
+        FROM (SELECT id, MIN(id) OVER (PARTITION BY parent_id, name) AS keep_id FROM folders) ranked
+        WHERE id <> keep_id;
+
+        UPDATE images i SET folder_id = d.keep_id FROM duplicate_folders d WHERE i.folder_id = d.id;
+        UPDATE folders f SET parent_id = d.keep_id FROM duplicate_folders d WHERE f.parent_id = d.id;
+        DELETE FROM folders f USING duplicate_folders d WHERE f.id = d.id;
+        GET DIAGNOSTICS merged = ROW_COUNT;
+
+        DROP TABLE duplicate_folders;
+        EXIT WHEN merged = 0;
+    END LOOP;
+END $$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_folders_parent_name ON folders (parent_id, name);
+CREATE INDEX IF NOT EXISTS idx_thumbnails_image_type ON thumbnails (image_id, type);
+CREATE INDEX IF NOT EXISTS idx_thumbnails_type_order ON thumbnails (type, thumbnail_order, id);
+CREATE INDEX IF NOT EXISTS idx_images_folder_order ON images (folder_id, image_order);
@@ -0,0 +1,11 @@
+ALTER TABLE thumbnails ADD COLUMN IF NOT EXISTS folder_id INT;
+
+UPDATE thumbnails t SET folder_id = i.folder_id
+FROM images i
+WHERE t.image_id = i.id AND t.folder_id IS DISTINCT FROM i.folder_id;
+
+-- Serves a gallery page as one index-only range scan, without touching images.
+CREATE INDEX IF NOT EXISTS idx_thumbnails_folder_type_order
+    ON thumbnails (folder_id, type, thumbnail_order, id) INCLUDE (image_id, data_hash, size);
+
+DROP INDEX IF EXISTS idx_thumbnails_type_order;
@@ -0,0 +1,4 @@
+CREATE TABLE IF NOT EXISTS backfill_checkpoints (
+    name VARCHAR(64) PRIMARY KEY,
+    last_id BIGINT NOT NULL
+);
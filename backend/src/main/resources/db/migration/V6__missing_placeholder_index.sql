@@ -0,0 +1,2 @@
+-- Lets the startup placeholder pass find images without a BlurHash without scanning the whole table.
+CREATE INDEX IF NOT EXISTS idx_images_missing_placeholder ON images (id) WHERE placeholder IS NULL;
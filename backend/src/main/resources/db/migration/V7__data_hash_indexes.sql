@@ -0,0 +1,3 @@
+-- The blob garbage collector checks candidate hashes against both tables one batch at a time.
+CREATE INDEX IF NOT EXISTS idx_images_data_hash ON images (data_hash);
+CREATE INDEX IF NOT EXISTS idx_thumbnails_data_hash ON thumbnails (data_hash);
@@ -0,0 +1,8 @@
+-- Gallery pages break thumbnail_order ties by image id so that thumbnails and placeholders
+-- of the same folder page in the same order and can share one (order, image id) cursor.
+DROP INDEX IF EXISTS idx_thumbnails_folder_type_order;
+CREATE INDEX IF NOT EXISTS idx_thumbnails_folder_type_order
+    ON thumbnails (folder_id, type, thumbnail_order, image_id) INCLUDE (id, data_hash, size);
+
+DROP INDEX IF EXISTS idx_images_folder_order;
+CREATE INDEX IF NOT EXISTS idx_images_folder_order ON images (folder_id, image_order, id);
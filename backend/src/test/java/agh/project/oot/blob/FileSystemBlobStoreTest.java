@@ -0,0 +1,103 @@
+package agh.project.oot.blob;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemBlobStoreTest {
+
+    @TempDir
+    private Path root;
+
+    /**
+     * Tests if stored data is read back unchanged and sharded by its SHA-256 hash.
+     */
+    @Test
+    void shouldStoreAndReadBlob() {
+        // Given
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString());
+        byte[] data = new byte[]{1, 2, 3};
+        String expectedHash = FileSystemBlobStore.hash(data);
+
+        // When
+        String hash = blobStore.put(data).block();
+
+        // Then
+        assertEquals(expectedHash, hash, "Blob should be addressed by its content hash");
+        assertTrue(Files.exists(root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash)),
+                "Blob should be stored in its shard directory");
+        StepVerifier.create(blobStore.get(hash))
+                .assertNext(result -> assertArrayEquals(data, result, "Blob content should match the stored data"))
+                .verifyComplete();
+    }
+
+    /**
+     * Tests if deleted blobs are no longer listed by the store.
+     */
+    @Test
+    void shouldDeleteBlob() {
+        // Given
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString());
+        String hash = blobStore.put(new byte[]{4, 5, 6}).block();
+
+        // When
+        blobStore.delete(hash).block();
+
+        // Then
+        StepVerifier.create(blobStore.findModifiedBefore(Instant.now().plusSeconds(60)))
+                .verifyComplete();
+    }
+
+    /**
+     * Tests if a blob deduplicated by a put after it was listed as old is kept by the garbage collection delete.
+     */
+    @Test
+    void shouldKeepBlobTouchedAfterListing() throws IOException {
+        // Given
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString());
+        byte[] data = new byte[]{7, 8, 9};
+        String hash = blobStore.put(data).block();
+        Path path = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        Instant cutoff = Instant.now().minus(Duration.ofHours(1));
+        List<String> listed = blobStore.findModifiedBefore(cutoff).collectList().block();
+
+        // When
+        blobStore.put(data).block();
+        Boolean deleted = blobStore.deleteIfModifiedBefore(hash, cutoff).block();
+
+        // Then
+        assertEquals(List.of(hash), listed, "Old blob should be listed as a candidate");
+        assertEquals(Boolean.FALSE, deleted, "Blob touched after listing should not be deleted");
+        assertTrue(Files.exists(path), "Blob should still be stored");
+    }
+
+    /**
+     * Tests if a blob that is still older than the cutoff is deleted.
+     */
+    @Test
+    void shouldDeleteBlobModifiedBeforeCutoff() throws IOException {
+        // Given
+        FileSystemBlobStore blobStore = new FileSystemBlobStore(root.toString());
+        String hash = blobStore.put(new byte[]{10, 11, 12}).block();
+        Path path = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        // When
+        Boolean deleted = blobStore.deleteIfModifiedBefore(hash, Instant.now().minus(Duration.ofHours(1))).block();
+
+        // Then
+        assertEquals(Boolean.TRUE, deleted, "Old blob should be deleted");
+        assertFalse(Files.exists(path), "Blob file should be removed");
+    }
+}
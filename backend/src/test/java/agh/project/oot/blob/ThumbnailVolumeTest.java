@@ -0,0 +1,117 @@
+package agh.project.oot.blob;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailVolumeTest {
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Tests if the offset index is rebuilt from the index file, including deletions, when a volume is reopened.
+     */
+    @Test
+    void shouldRebuildIndexOnReopen() throws IOException {
+        // Given
+        try (ThumbnailVolume volume = new ThumbnailVolume(directory, "small")) {
+            for (long id = 1; id <= 5; id++) {
+                volume.append(id, filled((int) id * 100, (byte) id));
+            }
+            volume.delete(3);
+        }
+
+        // When
+        try (ThumbnailVolume volume = new ThumbnailVolume(directory, "small")) {
+
+            // Then
+            assertEquals(4, volume.getEntryCount(), "Deleted thumbnail should not be indexed");
+            assertTrue(volume.read(3).isEmpty(), "Deleted thumbnail should not be readable");
+            assertArrayEquals(filled(400, (byte) 4), volume.read(4).orElseThrow(), "Thumbnail bytes should survive a reopen");
+        }
+    }
+
+    /**
+     * Tests if compaction drops dead entries and keeps live entries readable.
+     */
+    @Test
+    void shouldCompactDeadEntries() throws IOException {
+        // Given
+        try (ThumbnailVolume volume = new ThumbnailVolume(directory, "big")) {
+            for (long id = 1; id <= 4; id++) {
+                volume.append(id, filled(1000, (byte) id));
+            }
+
+            // When
+            long reclaimed = volume.compact(id -> id % 2 == 0);
+
+            // Then
+            assertEquals(2000, reclaimed, "Dead entries should be reclaimed");
+            assertEquals(2000, volume.getTotalBytes(), "Only live entries should remain in the volume");
+            assertTrue(volume.read(1).isEmpty(), "Dead thumbnail should not be readable after compaction");
+            assertArrayEquals(filled(1000, (byte) 4), volume.read(4).orElseThrow(), "Live thumbnail should be readable after compaction");
+        }
+    }
+
+    /**
+     * Tests if files left by a compaction that crashed before switching the manifest are ignored and removed.
+     */
+    @Test
+    void shouldIgnoreUnfinishedCompactionOnReopen() throws IOException {
+        // Given
+        try (ThumbnailVolume volume = new ThumbnailVolume(directory, "medium")) {
+            volume.append(1, filled(100, (byte) 1));
+        }
+        Files.write(directory.resolve("medium-2.dat"), filled(50, (byte) 9));
+        Files.write(directory.resolve("medium-2.idx"), filled(50, (byte) 9));
+
+        // When
+        try (ThumbnailVolume volume = new ThumbnailVolume(directory, "medium")) {
+
+            // Then
+            assertArrayEquals(filled(100, (byte) 1), volume.read(1).orElseThrow(), "Committed generation should be used");
+            assertFalse(Files.exists(directory.resolve("medium-2.dat")), "Unfinished compaction data should be removed");
+            assertFalse(Files.exists(directory.resolve("medium-2.idx")), "Unfinished compaction index should be removed");
+        }
+    }
+
+    /**
+     * Tests if a data file paired with an index of another generation is discarded instead of serving wrong bytes.
+     */
+    @Test
+    void shouldDiscardMismatchedIndexOnReopen() throws IOException {
+        // Given
+        try (ThumbnailVolume volume = new ThumbnailVolume(directory, "small")) {
+            volume.append(1, filled(100, (byte) 1));
+        }
+        try (FileChannel index = FileChannel.open(directory.resolve("small-1.idx"), StandardOpenOption.WRITE)) {
+            index.write(ByteBuffer.allocate(Long.BYTES).putLong(2).flip(), Integer.BYTES);
+        }
+
+        // When
+        try (ThumbnailVolume volume = new ThumbnailVolume(directory, "small")) {
+
+            // Then
+            assertEquals(0, volume.getEntryCount(), "Mismatched pair should not be indexed");
+            assertTrue(volume.read(1).isEmpty(), "Thumbnail should be read from the blob store instead");
+            volume.append(2, filled(10, (byte) 2));
+            assertArrayEquals(filled(10, (byte) 2), volume.read(2).orElseThrow(), "Fresh generation should accept writes");
+        }
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, value);
+        return data;
+    }
+}
@@ -0,0 +1,46 @@
+package agh.project.oot.importer;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageCopyEncoderTest {
+
+    /**
+     * Tests if rows are framed with the binary COPY signature, per-field lengths and the trailer.
+     */
+    @Test
+    void shouldEncodeRowsInBinaryCopyFormat() {
+        // Given
+        String hash = "a".repeat(64);
+        List<ImageCopyEncoder.Row> rows = List.of(new ImageCopyEncoder.Row(7, hash, 1234, 3));
+
+        // When
+        ByteBuf buffer = ImageCopyEncoder.encode(rows);
+
+        // Then
+        byte[] signature = new byte[11];
+        buffer.readBytes(signature);
+        assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0}, signature, "Signature should match");
+        assertEquals(0, buffer.readInt(), "Flags should be empty");
+        assertEquals(0, buffer.readInt(), "Header extension should be empty");
+
+        assertEquals(4, buffer.readShort(), "Row should have four fields");
+        assertEquals(4, buffer.readInt());
+        assertEquals(7, buffer.readInt(), "Id should be written as int4");
+        assertEquals(64, buffer.readInt());
+        assertEquals(hash, buffer.readCharSequence(64, StandardCharsets.UTF_8).toString(), "Hash should be written as text");
+        assertEquals(8, buffer.readInt());
+        assertEquals(1234, buffer.readLong(), "Size should be written as int8");
+        assertEquals(4, buffer.readInt());
+        assertEquals(3, buffer.readInt(), "Folder id should be written as int4");
+
+        assertEquals(-1, buffer.readShort(), "Trailer should end the stream");
+        assertFalse(buffer.isReadable(), "Nothing should follow the trailer");
+        buffer.release();
+    }
+}
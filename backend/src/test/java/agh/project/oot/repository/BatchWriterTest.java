@@ -0,0 +1,71 @@
+package agh.project.oot.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.RowsFetchSpec;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchWriterTest {
+
+    @Mock
+    private DatabaseClient databaseClient;
+
+    @Mock
+    private DatabaseClient.GenericExecuteSpec executeSpec;
+
+    @Mock
+    private RowsFetchSpec<Long> fetchSpec;
+
+    /**
+     * Tests if a batch whose column values cannot be read fails only its own writes and later saves still succeed.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldKeepWritingAfterFailingBatch() {
+        // Given
+        when(databaseClient.sql(anyString())).thenReturn(executeSpec);
+        when(executeSpec.bind(anyString(), any())).thenReturn(executeSpec);
+        when(executeSpec.map(any(Function.class))).thenReturn(fetchSpec);
+        when(fetchSpec.all()).thenReturn(Flux.just(42L));
+
+        BatchWriter<Entity> batchWriter = new BatchWriter<>("entities",
+                List.of(new BatchWriter.Column<>("name", String.class, entity -> entity.name.toUpperCase())),
+                (entity, id) -> entity.id = id, databaseClient, 1, Duration.ofMillis(10));
+
+        // When
+        var failing = batchWriter.save(new Entity(null));
+        var succeeding = batchWriter.save(new Entity("image"));
+
+        // Then
+        StepVerifier.create(failing)
+                .expectError(NullPointerException.class)
+                .verify(Duration.ofSeconds(5));
+        StepVerifier.create(succeeding)
+                .expectNextMatches(entity -> entity.id == 42L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        batchWriter.destroy();
+    }
+
+    private static final class Entity {
+        private final String name;
+        private Long id;
+
+        private Entity(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package agh.project.oot.repository;
+
+import agh.project.oot.model.Folder;
+import agh.project.oot.model.FolderTreeDeletion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Deletes a root folder with a nested subfolder chain, next to a sibling folder that has to survive.
+ */
+@SpringBootTest
+class FolderRepositoryTest {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private FolderRepository folderRepository;
+
+    private Long rootId;
+    private Long childId;
+    private Long grandchildId;
+    private Long siblingId;
+
+    @BeforeEach
+    void seedFolders() {
+        String suffix = "-" + System.nanoTime();
+        rootId = saveFolder("root" + suffix, 0L);
+        childId = saveFolder("child" + suffix, rootId);
+        grandchildId = saveFolder("grandchild" + suffix, childId);
+        siblingId = saveFolder("sibling" + suffix, 0L);
+        for (Long folderId : List.of(rootId, childId, grandchildId, siblingId)) {
+            saveImageWithThumbnails(folderId);
+        }
+    }
+
+    @AfterEach
+    void removeFolders() {
+        String folderIds = idList(List.of(rootId, childId, grandchildId, siblingId));
+        execute("DELETE FROM images WHERE folder_id IN (" + folderIds + ")");
+        execute("DELETE FROM folders WHERE id IN (" + folderIds + ")");
+    }
+
+    /**
+     * Tests if deleting a folder removes the folders, images and thumbnails of its whole subtree and nothing else.
+     */
+    @Test
+    void shouldDeleteNestedSubtree() {
+        // Given
+        String subtree = idList(List.of(rootId, childId, grandchildId));
+
+        // When
+        FolderTreeDeletion result = folderRepository.deleteFolderTree(rootId).block();
+
+        // Then
+        assertNotNull(result);
+        assertEquals(List.of(rootId, childId, grandchildId), Arrays.stream(result.folderIds()).sorted().toList());
+        assertEquals(3L, result.imageCount());
+        assertEquals(0L, count("SELECT COUNT(*) FROM folders WHERE id IN (" + subtree + ")"));
+        assertEquals(0L, count("SELECT COUNT(*) FROM images WHERE folder_id IN (" + subtree + ")"));
+        assertEquals(0L, count("SELECT COUNT(*) FROM thumbnails WHERE folder_id IN (" + subtree + ")"));
+        assertEquals(1L, count("SELECT COUNT(*) FROM folders WHERE id = " + siblingId));
+        assertEquals(1L, count("SELECT COUNT(*) FROM images WHERE folder_id = " + siblingId));
+        assertEquals(2L, count("SELECT COUNT(*) FROM thumbnails WHERE folder_id = " + siblingId));
+    }
+
+    /**
+     * Tests if the returned thumbnail ids and types pair up, so the volume entries of exactly the deleted rows are removed.
+     */
+    @Test
+    void shouldReturnTypeOfEachDeletedThumbnail() {
+        // Given
+        Map<Long, String> expected = databaseClient.sql("SELECT id, type FROM thumbnails WHERE folder_id IN ("
+                        + idList(List.of(rootId, childId, grandchildId)) + ")")
+                .map(row -> Map.entry(row.get("id", Long.class), row.get("type", String.class)))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .block();
+
+        // When
+        FolderTreeDeletion result = folderRepository.deleteFolderTree(rootId).block();
+
+        // Then
+        assertNotNull(result);
+        assertEquals(result.thumbnailIds().length, result.thumbnailTypes().length);
+        Map<Long, String> deleted = new HashMap<>();
+        for (int index = 0; index < result.thumbnailIds().length; index++) {
+            deleted.put(result.thumbnailIds()[index], result.thumbnailTypes()[index]);
+        }
+        assertEquals(expected, deleted);
+    }
+
+    private Long saveFolder(String name, Long parentId) {
+        return folderRepository.save(new Folder(name, parentId)).map(Folder::getId).block();
+    }
+
+    private void saveImageWithThumbnails(Long folderId) {
+        execute("INSERT INTO images (data_hash, size, image_order, folder_id) "
+                + "VALUES (md5('" + folderId + "') || md5('" + folderId + "'), 1000, 0, " + folderId + ")");
+        execute("INSERT INTO thumbnails (data_hash, size, type, image_id, folder_id, thumbnail_order) "
+                + "SELECT i.data_hash, 100, t.type, i.id, i.folder_id, i.image_order "
+                + "FROM images i CROSS JOIN (VALUES ('SMALL'), ('MEDIUM')) t(type) WHERE i.folder_id = " + folderId);
+    }
+
+    private long count(String sql) {
+        return databaseClient.sql(sql).map(row -> row.get(0, Long.class)).one().block();
+    }
+
+    private static String idList(List<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
+
+    private void execute(String sql) {
+        databaseClient.sql(sql).then().block();
+    }
+}
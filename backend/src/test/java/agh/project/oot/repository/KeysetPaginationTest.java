@@ -0,0 +1,154 @@
+package agh.project.oot.repository;
+
+import agh.project.oot.model.PageCursor;
+import agh.project.oot.model.Thumbnail;
+import agh.project.oot.service.ImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static agh.project.oot.model.ThumbnailType.SMALL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pages a folder whose images share orders and partly have no order. Thumbnails are inserted in reverse,
+ * so their own ids do not follow the image ids the pages are tied on.
+ */
+@SpringBootTest
+class KeysetPaginationTest {
+    private static final int FOLDER_ID = 1_000_000_001;
+    private static final int IMAGES = 7;
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private ThumbnailRepository thumbnailRepository;
+
+    @Autowired
+    private ImageService imageService;
+
+    @BeforeEach
+    void seedFolder() {
+        execute("INSERT INTO images (data_hash, size, image_order, folder_id) "
+                + "SELECT md5(n::text) || md5(n::text), 1000, o, " + FOLDER_ID
+                + " FROM (VALUES (1, 0), (2, 1024), (3, 1024), (4, 1024), (5, 2048), (6, NULL), (7, NULL)) v(n, o) ORDER BY n");
+        execute("UPDATE images SET placeholder = id::text WHERE folder_id = " + FOLDER_ID);
+        execute("INSERT INTO thumbnails (data_hash, size, type, image_id, folder_id, thumbnail_order) "
+                + "SELECT i.data_hash, 100, 'SMALL', i.id, i.folder_id, i.image_order FROM images i "
+                + "WHERE i.folder_id = " + FOLDER_ID + " ORDER BY i.id DESC");
+    }
+
+    @AfterEach
+    void removeFolder() {
+        execute("DELETE FROM images WHERE folder_id = " + FOLDER_ID);
+    }
+
+    /**
+     * Tests if paging thumbnails by cursor returns every thumbnail of a shared order, in page-number order.
+     */
+    @Test
+    void shouldNotSkipThumbnailsWithEqualOrder() {
+        // Given
+        List<Thumbnail> all = thumbnailsByPageNumber();
+        List<Long> expected = imageIds(all.subList(0, 5));
+
+        // When
+        List<Thumbnail> result = new ArrayList<>();
+        List<Thumbnail> page = thumbnailRepository.findByTypeAndFolderPaginated(SMALL, PAGE_SIZE, 0, FOLDER_ID).collectList().block();
+        while (!page.isEmpty()) {
+            result.addAll(page);
+            PageCursor cursor = PageCursor.from(page.getLast());
+            page = thumbnailRepository.findByTypeAndFolderAfter(SMALL, cursor.order(), cursor.id(), PAGE_SIZE, FOLDER_ID).collectList().block();
+        }
+
+        // Then
+        assertEquals(expected, imageIds(result));
+    }
+
+    /**
+     * Tests if thumbnails without an order are paged by image id, as they come last in the page-number query.
+     */
+    @Test
+    void shouldPageUnorderedThumbnailsByImageId() {
+        // Given
+        List<Thumbnail> all = thumbnailsByPageNumber();
+        long firstImageId = all.get(5).getImageId();
+
+        // When
+        List<Thumbnail> result = thumbnailRepository.findUnorderedByTypeAndFolderAfter(SMALL, 0L, IMAGES, FOLDER_ID).collectList().block();
+        List<Thumbnail> afterFirst = thumbnailRepository.findUnorderedByTypeAndFolderAfter(SMALL, firstImageId, IMAGES, FOLDER_ID).collectList().block();
+
+        // Then
+        assertEquals(imageIds(all.subList(5, IMAGES)), imageIds(result));
+        assertEquals(imageIds(all.subList(6, IMAGES)), imageIds(afterFirst));
+    }
+
+    /**
+     * Tests if page-number placeholder pages hold the placeholders of the page-number thumbnail pages.
+     */
+    @Test
+    void shouldPagePlaceholdersLikeThumbnailsByPageNumber() {
+        // Given
+        List<Thumbnail> all = thumbnailsByPageNumber();
+
+        for (int page = 1; (page - 1) * PAGE_SIZE < IMAGES; page++) {
+            // When
+            List<String> result = imageService.findPlaceholdersByFolderId((long) FOLDER_ID, PageRequest.of(page, PAGE_SIZE))
+                    .collectList()
+                    .block();
+
+            // Then
+            int from = (page - 1) * PAGE_SIZE;
+            assertEquals(placeholders(all.subList(from, Math.min(from + PAGE_SIZE, IMAGES))), result, "page " + page);
+        }
+    }
+
+    /**
+     * Tests if placeholder pages read after a thumbnail cursor cross shared orders and the unordered tail
+     * without skipping or repeating an image.
+     */
+    @Test
+    void shouldPagePlaceholdersLikeThumbnailsByCursor() {
+        // Given
+        List<Thumbnail> all = thumbnailsByPageNumber();
+
+        for (int from = PAGE_SIZE; from < IMAGES; from += PAGE_SIZE) {
+            PageCursor cursor = PageCursor.from(all.get(from - 1));
+
+            // When
+            List<String> result = imageService.findPlaceholdersByFolderIdAfter((long) FOLDER_ID, cursor, PAGE_SIZE)
+                    .collectList()
+                    .block();
+
+            // Then
+            assertEquals(placeholders(all.subList(from, Math.min(from + PAGE_SIZE, IMAGES))), result, "after " + cursor);
+        }
+    }
+
+    private List<Thumbnail> thumbnailsByPageNumber() {
+        List<Thumbnail> all = thumbnailRepository.findByTypeAndFolderPaginated(SMALL, IMAGES, 0, FOLDER_ID).collectList().block();
+        assertEquals(IMAGES, all.size());
+        return all;
+    }
+
+    private static List<Long> imageIds(List<Thumbnail> thumbnails) {
+        return thumbnails.stream().map(Thumbnail::getImageId).toList();
+    }
+
+    private static List<String> placeholders(List<Thumbnail> thumbnails) {
+        return thumbnails.stream().map(thumbnail -> thumbnail.getImageId().toString()).toList();
+    }
+
+    private void execute(String sql) {
+        databaseClient.sql(sql).then().block();
+    }
+}
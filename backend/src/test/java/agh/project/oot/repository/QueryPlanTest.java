@@ -0,0 +1,80 @@
+package agh.project.oot.repository;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class QueryPlanTest {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("ThumbnailRepository.findByImageIdAndType",
+                        "SELECT * FROM thumbnails WHERE image_id = 1 AND type = 'SMALL'",
+                        "idx_thumbnails_image_type"),
+                Arguments.of("ThumbnailRepository.findByTypeAndFolderAfter",
+                        "SELECT id, data_hash, size, image_id, folder_id, type, thumbnail_order FROM thumbnails "
+                                + "WHERE folder_id = 1 AND type = 'SMALL' AND (thumbnail_order, image_id) > (0, 0) "
+                                + "ORDER BY thumbnail_order, image_id LIMIT 50",
+                        "idx_thumbnails_folder_type_order"),
+                Arguments.of("ImageRepository.findPlaceholdersByFolderIdAfter",
+                        "SELECT COALESCE(placeholder, '') FROM images "
+                                + "WHERE folder_id = 1 AND (image_order, id) > (0, 0) "
+                                + "ORDER BY image_order, id LIMIT 50",
+                        "idx_images_folder_order"),
+                Arguments.of("ImageRepository.findMetadataByFolderIdOrderByImageOrder",
+                        "SELECT id, folder_id, image_order, size FROM images WHERE folder_id = 1 ORDER BY image_order",
+                        "idx_images_folder_order"),
+                Arguments.of("ImageRepository.countByFolderId",
+                        "SELECT COUNT(*) FROM images WHERE folder_id = 1",
+                        "idx_images_folder_order"),
+                Arguments.of("BlobGarbageCollector.findReferencedHashes",
+                        "SELECT data_hash FROM thumbnails WHERE data_hash = ANY(CAST(ARRAY['a', 'b'] AS CHAR(64)[]))",
+                        "idx_thumbnails_data_hash"),
+                Arguments.of("FolderRepository.findByNameAndParentId",
+                        "SELECT * FROM folders WHERE name = 'folder' AND parent_id = 0",
+                        "uq_folders_parent_name")
+        );
+    }
+
+    /**
+     * Tests if the planner can serve each hot repository query from its index instead of a sequential scan.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void shouldUseIndexForHotQuery(String method, String query, String index) {
+        // Given
+        // Test tables are tiny, so sequential scans are disabled to see whether an index is usable at all.
+        var plan = databaseClient.sql("SET LOCAL enable_seqscan = off")
+                .then()
+                .thenMany(databaseClient.sql("EXPLAIN " + query)
+                        .map(row -> row.get(0, String.class))
+                        .all())
+                .as(transactionalOperator::transactional)
+                .collectList();
+
+        // When
+        List<String> result = plan.block();
+
+        // Then
+        assertNotNull(result, "Query plan should not be null");
+        assertTrue(result.stream().anyMatch(line -> line.contains(index)),
+                method + " should use " + index + " but the plan was:\n" + String.join("\n", result));
+    }
+}
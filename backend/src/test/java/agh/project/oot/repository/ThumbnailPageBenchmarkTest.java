@@ -0,0 +1,121 @@
+package agh.project.oot.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the old join + OFFSET gallery page query with the denormalized keyset query
+ * on a 100k-image folder. Run with OOT_BENCHMARK=true against the test database.
+ * Each query is measured with only the indexes of its own schema, the index dropped by V4 is recreated for the run
+ * and the other schema's index is dropped inside a transaction that is rolled back.
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "OOT_BENCHMARK", matches = "true")
+class ThumbnailPageBenchmarkTest {
+    private static final int FOLDER_ID = 1_000_000_000;
+    private static final int IMAGES = 100_000;
+    private static final int ORDER_GAP = 1024;
+    private static final int PAGE_SIZE = 50;
+    private static final int RUNS = 15;
+    private static final String OLD_INDEX = "idx_thumbnails_type_order";
+    private static final String NEW_INDEX = "idx_thumbnails_folder_type_order";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @BeforeEach
+    void seedFolder() {
+        execute("INSERT INTO images (data_hash, size, image_order, folder_id) "
+                + "SELECT md5(n::text) || md5(n::text), 1000, n * " + ORDER_GAP + ", " + FOLDER_ID
+                + " FROM generate_series(0, " + (IMAGES - 1) + ") n");
+        execute("INSERT INTO thumbnails (data_hash, size, type, image_id, folder_id, thumbnail_order) "
+                + "SELECT i.data_hash, 100, t.type, i.id, i.folder_id, i.image_order "
+                + "FROM images i CROSS JOIN (VALUES ('SMALL'), ('MEDIUM'), ('BIG')) t(type) "
+                + "WHERE i.folder_id = " + FOLDER_ID);
+        execute("CREATE INDEX IF NOT EXISTS " + OLD_INDEX + " ON thumbnails (type, thumbnail_order, id)");
+        execute("VACUUM ANALYZE images");
+        execute("VACUUM ANALYZE thumbnails");
+    }
+
+    @AfterEach
+    void removeFolder() {
+        execute("DROP INDEX IF EXISTS " + OLD_INDEX);
+        execute("DELETE FROM images WHERE folder_id = " + FOLDER_ID);
+    }
+
+    /**
+     * Tests if the denormalized keyset query is faster than the join + OFFSET query for a deep page.
+     */
+    @Test
+    void shouldServeDeepPagesFasterWithoutJoin() {
+        // Given
+        List<Integer> offsets = List.of(0, IMAGES / 2, IMAGES - PAGE_SIZE);
+
+        // When
+        double deepestBefore = 0;
+        double deepestAfter = 0;
+        for (int offset : offsets) {
+            deepestBefore = medianExecutionTime(beforeQuery(offset), NEW_INDEX);
+            deepestAfter = medianExecutionTime(afterQuery(offset), OLD_INDEX);
+            log.info("Page at offset {}: join + OFFSET {} ms, denormalized keyset {} ms", offset, deepestBefore, deepestAfter);
+        }
+
+        // Then
+        assertTrue(deepestAfter < deepestBefore,
+                "Deepest page should be faster without the join, was " + deepestAfter + " ms vs " + deepestBefore + " ms");
+    }
+
+    private String beforeQuery(int offset) {
+        return "SELECT t.* FROM thumbnails t JOIN images i ON t.image_id = i.id "
+                + "WHERE t.type = 'SMALL' AND i.folder_id = " + FOLDER_ID + " "
+                + "ORDER BY t.thumbnail_order, t.id LIMIT " + PAGE_SIZE + " OFFSET " + offset;
+    }
+
+    private String afterQuery(int offset) {
+        long afterOrder = offset == 0 ? -1 : (long) (offset - 1) * ORDER_GAP;
+        return "SELECT id, data_hash, size, image_id, folder_id, type, thumbnail_order FROM thumbnails "
+                + "WHERE folder_id = " + FOLDER_ID + " AND type = 'SMALL' "
+                + "AND (thumbnail_order, image_id) > (" + afterOrder + ", " + Integer.MAX_VALUE + ") "
+                + "ORDER BY thumbnail_order, image_id LIMIT " + PAGE_SIZE;
+    }
+
+    private double medianExecutionTime(String query, String hiddenIndex) {
+        double[] times = new double[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            times[run] = transactionalOperator.execute(status -> {
+                        status.setRollbackOnly();
+                        return databaseClient.sql("DROP INDEX " + hiddenIndex)
+                                .then()
+                                .thenMany(Flux.defer(() -> databaseClient.sql("EXPLAIN ANALYZE " + query)
+                                        .map(row -> row.get(0, String.class))
+                                        .all()));
+                    })
+                    .filter(line -> line.startsWith("Execution Time:"))
+                    .map(line -> Double.parseDouble(line.replaceAll("[^0-9.]", "")))
+                    .blockLast();
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    private void execute(String sql) {
+        databaseClient.sql(sql).then().block();
+    }
+}
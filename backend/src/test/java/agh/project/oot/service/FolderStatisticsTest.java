@@ -0,0 +1,121 @@
+package agh.project.oot.service;
+
+import agh.project.oot.model.FolderImageStatistics;
+import agh.project.oot.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FolderStatisticsTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    /**
+     * Tests if reconciling replaces drifted counters with the counts from the database.
+     */
+    @Test
+    void shouldCorrectDriftedCounters() {
+        // Given
+        FolderStatistics folderStatistics = new FolderStatistics(imageRepository, new SimpleMeterRegistry());
+        folderStatistics.added(1L, 100L);
+        folderStatistics.added(2L, 100L);
+        when(imageRepository.findFolderImageStatistics())
+                .thenReturn(Flux.just(new FolderImageStatistics(1L, 5L, 500L)));
+
+        // When
+        StepVerifier.create(folderStatistics.reconcile())
+                .verifyComplete();
+
+        // Then
+        assertTrue(folderStatistics.isLoaded(), "Statistics should be loaded after reconciling");
+        assertEquals(5, folderStatistics.getImageCount(1L), "Count should be taken from the database");
+        assertEquals(0, folderStatistics.getImageCount(2L), "Folders without images should be dropped");
+    }
+
+    /**
+     * Tests if images added or removed while the statistics are queried are kept on top of the snapshot.
+     */
+    @Test
+    void shouldKeepWritesRecordedDuringReconcile() {
+        // Given
+        FolderStatistics folderStatistics = new FolderStatistics(imageRepository, new SimpleMeterRegistry());
+        folderStatistics.added(1L, 100L);
+        when(imageRepository.findFolderImageStatistics()).thenReturn(Flux.defer(() -> {
+            folderStatistics.added(1L, 100L);
+            folderStatistics.removed(1L, 100L);
+            folderStatistics.added(1L, 100L);
+            folderStatistics.added(3L, 100L);
+            return Flux.just(new FolderImageStatistics(1L, 1L, 100L));
+        }));
+
+        // When
+        StepVerifier.create(folderStatistics.reconcile())
+                .verifyComplete();
+
+        // Then
+        assertEquals(2, folderStatistics.getImageCount(1L), "Image added during the query should not be lost");
+        assertEquals(1, folderStatistics.getImageCount(3L), "Folder created during the query should not be dropped");
+    }
+
+    /**
+     * Tests if an image committed before the query but counted after it is not counted twice.
+     */
+    @Test
+    void shouldNotDoubleCountWriteCommittedBeforeQuery() {
+        // Given
+        FolderStatistics folderStatistics = new FolderStatistics(imageRepository, new SimpleMeterRegistry());
+        folderStatistics.added(1L, 100L);
+        Sinks.One<Long> committed = Sinks.one();
+        folderStatistics.trackWrite(1L, committed.asMono().doOnNext(size -> folderStatistics.added(1L, size)))
+                .subscribe();
+        when(imageRepository.findFolderImageStatistics())
+                .thenReturn(Flux.just(new FolderImageStatistics(1L, 2L, 200L)));
+
+        // When
+        StepVerifier.create(folderStatistics.reconcile())
+                .verifyComplete();
+        committed.tryEmitValue(100L);
+
+        // Then
+        assertEquals(2, folderStatistics.getImageCount(1L), "Image in the snapshot should only be counted once");
+
+        StepVerifier.create(folderStatistics.reconcile())
+                .verifyComplete();
+        assertEquals(2, folderStatistics.getImageCount(1L), "Settled folder should be reconciled by the next run");
+    }
+
+    /**
+     * Tests if a pending delete, whose folder is unknown until it completes, postpones the reconcile of every folder.
+     */
+    @Test
+    void shouldPostponeReconcileWhileDeleteIsPending() {
+        // Given
+        FolderStatistics folderStatistics = new FolderStatistics(imageRepository, new SimpleMeterRegistry());
+        folderStatistics.added(1L, 100L);
+        folderStatistics.added(1L, 100L);
+        Sinks.One<Long> deleted = Sinks.one();
+        folderStatistics.trackWrite(deleted.asMono().doOnNext(size -> folderStatistics.removed(1L, size)))
+                .subscribe();
+        when(imageRepository.findFolderImageStatistics())
+                .thenReturn(Flux.just(new FolderImageStatistics(1L, 1L, 100L)));
+
+        // When
+        StepVerifier.create(folderStatistics.reconcile())
+                .verifyComplete();
+        deleted.tryEmitValue(100L);
+
+        // Then
+        assertFalse(folderStatistics.isLoaded(), "Statistics should not be loaded from a postponed reconcile");
+        assertEquals(1, folderStatistics.getImageCount(1L), "Deleted image should only be subtracted once");
+    }
+}
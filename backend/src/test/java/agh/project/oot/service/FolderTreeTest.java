@@ -0,0 +1,53 @@
+package agh.project.oot.service;
+
+import agh.project.oot.model.Folder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FolderTreeTest {
+
+    /**
+     * Tests if the tree answers child and (parentId, name) lookups for the folders it was loaded with.
+     */
+    @Test
+    void shouldLookUpLoadedFolders() {
+        // Given
+        FolderTree tree = new FolderTree(List.of(folder(1L, "photos", 0L), folder(2L, "2024", 1L), folder(3L, "2025", 1L)));
+
+        // When
+        List<Long> children = tree.children(1L).stream().map(Folder::getId).sorted().toList();
+
+        // Then
+        assertEquals(List.of(2L, 3L), children, "Both subfolders should be listed");
+        assertEquals(3L, tree.find(1L, "2025").orElseThrow().getId(), "Folder should be found by parent and name");
+        assertEquals(1L, tree.get(2L).orElseThrow().getParentId(), "Parent pointer should be kept");
+        assertTrue(tree.find(0L, "2025").isEmpty(), "Name lookup should be scoped to the parent");
+    }
+
+    /**
+     * Tests if removing a folder drops it from its parent's children and name lookup.
+     */
+    @Test
+    void shouldRemoveFolderFromParent() {
+        // Given
+        FolderTree tree = new FolderTree(List.of(folder(1L, "photos", 0L), folder(2L, "2024", 1L)));
+
+        // When
+        tree.remove(2L);
+
+        // Then
+        assertTrue(tree.get(2L).isEmpty(), "Removed folder should not be found by id");
+        assertTrue(tree.find(1L, "2024").isEmpty(), "Removed folder should not be found by name");
+        assertTrue(tree.children(1L).isEmpty(), "Removed folder should not be listed");
+        assertEquals(1, tree.size());
+    }
+
+    private Folder folder(Long id, String name, Long parentId) {
+        Folder folder = new Folder(name, parentId);
+        folder.setId(id);
+        return folder;
+    }
+}
@@ -0,0 +1,134 @@
+package agh.project.oot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageOrderServiceTest {
+
+    @Mock
+    private FolderService folderService;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    /**
+     * Tests if callers overflowing the same folder concurrently wait for a single rebalance.
+     */
+    @Test
+    void shouldShareRebalanceBetweenConcurrentCallers() {
+        // Given
+        ImageOrderService imageOrderService = new ImageOrderService(folderService, imageService, thumbnailService);
+        Sinks.One<Long> rebalanced = Sinks.one();
+        when(folderService.getFolders()).thenReturn(Flux.empty());
+        when(imageService.findTopByFolderIdOrderByImageOrderDesc(0L)).thenReturn(Mono.just((long) Integer.MAX_VALUE));
+        when(imageService.countImagesByFolderId(0L)).thenReturn(Mono.just(10L));
+        when(imageService.rebalanceImageOrder(0L, 1024L)).thenReturn(rebalanced.asMono());
+        imageOrderService.initializeImageOrder().block();
+
+        // When
+        Mono<List<Long>> orders = Flux.merge(imageOrderService.getNextImageOrder(0L), imageOrderService.getNextImageOrder(0L))
+                .collectList();
+
+        // Then
+        StepVerifier.create(orders)
+                .then(() -> rebalanced.tryEmitValue(10L))
+                .assertNext(result -> assertEquals(List.of(10240L, 11264L), result.stream().sorted().toList(),
+                        "Both callers should get orders after the rebalanced images"))
+                .verifyComplete();
+        verify(imageService, times(1)).rebalanceImageOrder(0L, 1024L);
+    }
+
+    /**
+     * Tests if an order handed out before a rebalance but written after it is replaced by an order after the rebalance.
+     */
+    @Test
+    void shouldReassignOrderWrittenDuringRebalance() {
+        // Given
+        ImageOrderService imageOrderService = new ImageOrderService(folderService, imageService, thumbnailService);
+        when(folderService.getFolders()).thenReturn(Flux.empty());
+        when(imageService.findTopByFolderIdOrderByImageOrderDesc(0L)).thenReturn(Mono.just((long) Integer.MAX_VALUE - 1024));
+        when(imageService.countImagesByFolderId(0L)).thenReturn(Mono.just(10L));
+        when(imageService.rebalanceImageOrder(0L, 1024L)).thenReturn(Mono.just(10L));
+        imageOrderService.initializeImageOrder().block();
+
+        List<Long> written = new CopyOnWriteArrayList<>();
+        Sinks.Empty<Void> delayedWrite = Sinks.empty();
+        AtomicReference<Long> delayedOrder = new AtomicReference<>();
+
+        // When
+        imageOrderService.assignNextImageOrder(0L, order -> {
+                    written.add(order);
+                    return written.size() == 1 ? delayedWrite.asMono() : Mono.empty();
+                })
+                .subscribe(delayedOrder::set);
+        Long overflowingOrder = imageOrderService.assignNextImageOrder(0L, order -> Mono.empty()).block();
+        delayedWrite.tryEmitEmpty();
+
+        // Then
+        assertEquals(10240L, overflowingOrder, "Overflowing caller should get the first order after the rebalance");
+        assertEquals(List.of((long) Integer.MAX_VALUE, 11264L), written,
+                "Order written during the rebalance should be written again after it");
+        assertEquals(11264L, delayedOrder.get(), "Delayed caller should end up after the rebalanced images");
+        verify(imageService, times(1)).rebalanceImageOrder(0L, 1024L);
+    }
+
+    /**
+     * Tests if freshly ordered images get their position without counting the images before them in the database.
+     */
+    @Test
+    void shouldDerivePositionOfFreshlyOrderedImages() {
+        // Given
+        ImageOrderService imageOrderService = new ImageOrderService(folderService, imageService, thumbnailService);
+        when(folderService.getFolders()).thenReturn(Flux.empty());
+        when(imageService.findTopByFolderIdOrderByImageOrderDesc(0L)).thenReturn(Mono.just(2048L));
+        when(imageService.countImagesByFolderId(0L)).thenReturn(Mono.just(5L));
+        imageOrderService.initializeImageOrder().block();
+        Long first = imageOrderService.getNextImageOrder(0L).block();
+        Long second = imageOrderService.getNextImageOrder(0L).block();
+
+        // When
+        Long firstPosition = imageOrderService.positionOf(0L, first).block();
+        Long secondPosition = imageOrderService.positionOf(0L, second).block();
+        Long olderPosition = imageOrderService.positionOf(0L, 2048L).block();
+
+        // Then
+        assertEquals(3L, firstPosition, "Image ordered before the last one should be second to last");
+        assertEquals(4L, secondPosition, "Last ordered image should be last in the folder");
+        assertNull(olderPosition, "Orders from before the current range should need a query");
+        verify(imageService, never()).countImagesBeforeOrder(any(), any());
+    }
+
+    /**
+     * Tests if folders too large for the default gap are rebalanced with a smaller one that still fits.
+     */
+    @Test
+    void shouldUseSmallerGapForLargeFolders() {
+        // Given
+        long count = 3_000_000;
+
+        // When
+        long gap = ImageOrderService.gapFor(count);
+
+        // Then
+        assertTrue(gap < 1024, "Gap should shrink for large folders");
+        assertTrue(count * gap * 2 <= Integer.MAX_VALUE, "Rebalanced orders should leave room for new images");
+        assertEquals(1024, ImageOrderService.gapFor(0), "Empty folders should keep the default gap");
+    }
+}
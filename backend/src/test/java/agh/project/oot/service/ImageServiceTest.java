@@ -1,7 +1,9 @@
 package agh.project.oot.service;
 
 import agh.project.oot.ImageSink;
+import agh.project.oot.blob.BlobStore;
 import agh.project.oot.model.Image;
+import agh.project.oot.repository.BatchWriter;
 import agh.project.oot.repository.ImageRepository;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -14,19 +16,31 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 
-//! TODO Fix it
 @ExtendWith(MockitoExtension.class)
 class ImageServiceTest {
 
     @Mock
     private ImageRepository imageRepository;
 
+    @Mock
+    private BatchWriter<Image> imageBatchWriter;
+
     @Mock
     private ImageSink imageSink;
 
+    @Mock
+    private Sinks.Many<Long> sink;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private FolderStatistics folderStatistics;
+
     @InjectMocks
     private ImageService imageService;
 
@@ -34,7 +48,10 @@ class ImageServiceTest {
     void shouldSaveAndNotifyThumbnail() {
         // Given
         Image image = new Image(new byte[]{1, 2, 3}, 1L);
-        when(imageRepository.save(any(Image.class))).thenReturn(Mono.just(image));
+        when(blobStore.put(any())).thenReturn(Mono.just("hash"));
+        when(imageBatchWriter.save(any(Image.class))).thenReturn(Mono.just(image));
+        when(folderStatistics.trackWrite(anyLong(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(imageSink.getSink()).thenReturn(sink);
 
         // When
         Mono<Image> result = imageService.saveAndNotifyThumbnail(image);
@@ -45,15 +62,17 @@ class ImageServiceTest {
                 .verifyComplete();
 
         // Verify interactions
-        verify(imageRepository).save(any(Image.class));
-        verify(imageSink.getSink()).emitNext(image.getId(), Sinks.EmitFailureHandler.FAIL_FAST);
+        verify(imageBatchWriter).save(any(Image.class));
+        verify(sink).emitNext(image.getId(), Sinks.EmitFailureHandler.FAIL_FAST);
     }
 
     @Test
     void shouldHandleErrorOnSaveAndNotifyThumbnail() {
         // Given
         Image image = new Image(new byte[]{1, 2, 3}, 1L);
-        when(imageRepository.save(any(Image.class))).thenReturn(Mono.error(new RuntimeException("Error saving image")));
+        when(blobStore.put(any())).thenReturn(Mono.just("hash"));
+        when(imageBatchWriter.save(any(Image.class))).thenReturn(Mono.error(new RuntimeException("Error saving image")));
+        when(folderStatistics.trackWrite(anyLong(), any())).thenAnswer(invocation -> invocation.getArgument(1));
 
         // When
         Mono<Image> result = imageService.saveAndNotifyThumbnail(image);
@@ -65,8 +84,8 @@ class ImageServiceTest {
                 .verify();
 
         // Verify interactions
-        verify(imageRepository).save(any(Image.class));
-        verify(imageSink.getSink(), Mockito.never()).emitNext(any(), any());
+        verify(imageBatchWriter).save(any(Image.class));
+        verify(sink, Mockito.never()).emitNext(any(), any());
     }
 
     @Test
@@ -1,28 +1,38 @@
 package agh.project.oot.service;
 
+import agh.project.oot.blob.BlobStore;
+import agh.project.oot.blob.ThumbnailVolumeStore;
+import agh.project.oot.model.FolderTreeDeletion;
 import agh.project.oot.model.Image;
+import agh.project.oot.model.MissingThumbnails;
 import agh.project.oot.model.Thumbnail;
 import agh.project.oot.model.ThumbnailType;
+import agh.project.oot.repository.BatchWriter;
 import agh.project.oot.repository.ThumbnailRepository;
 import agh.project.oot.thumbnails.ThumbnailConverter;
+import agh.project.oot.thumbnails.ThumbnailRenderScheduler;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.EnumSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import static agh.project.oot.model.ThumbnailType.SMALL;
 import static org.mockito.Mockito.*;
 
-// !TODO FIX
 @ExtendWith(MockitoExtension.class)
 class ThumbnailServiceTest {
+    private static final String BACKFILL_CHECKPOINT = "missing-thumbnails";
 
     @Mock
     private ThumbnailConverter thumbnailConverterMock;
@@ -33,6 +43,18 @@ class ThumbnailServiceTest {
     @Mock
     private ThumbnailRepository thumbnailRepositoryMock;
 
+    @Mock
+    private BatchWriter<Thumbnail> thumbnailBatchWriterMock;
+
+    @Mock
+    private BlobStore blobStoreMock;
+
+    @Mock
+    private ThumbnailVolumeStore thumbnailVolumeStoreMock;
+
+    @Mock
+    private ThumbnailRenderScheduler renderSchedulerMock;
+
     @InjectMocks
     private ThumbnailService thumbnailService;
 
@@ -50,7 +72,9 @@ class ThumbnailServiceTest {
         // When
         when(thumbnailConverterMock.generateAllThumbnails(any(Image.class)))
                 .thenReturn(Flux.just(thumbnail));
-        when(thumbnailRepositoryMock.save(any(Thumbnail.class)))
+        when(blobStoreMock.put(any())).thenReturn(Mono.just("hash"));
+        when(thumbnailVolumeStoreMock.write(any(), any(), any())).thenReturn(Mono.empty());
+        when(thumbnailBatchWriterMock.save(any(Thumbnail.class)))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
         // Then
@@ -60,7 +84,7 @@ class ThumbnailServiceTest {
 
         verify(thumbnailConverterMock, times(1))
                 .generateAllThumbnails(any(Image.class));
-        verify(thumbnailRepositoryMock, times(1))
+        verify(thumbnailBatchWriterMock, times(1))
                 .save(any(Thumbnail.class));
     }
 
@@ -83,9 +107,11 @@ class ThumbnailServiceTest {
         when(thumbnailConverterMock.generateAllThumbnails(any(Image.class)))
                 .thenReturn(Flux.just(thumbnail1))
                 .thenReturn(Flux.just(thumbnail2));
-        when(thumbnailRepositoryMock.save(eq(thumbnail1)))
+        when(blobStoreMock.put(any())).thenReturn(Mono.just("hash"));
+        when(thumbnailVolumeStoreMock.write(any(), any(), any())).thenReturn(Mono.empty());
+        when(thumbnailBatchWriterMock.save(eq(thumbnail1)))
                 .thenReturn(Mono.error(new IllegalArgumentException("Error saving thumbnail to repository")));
-        when(thumbnailRepositoryMock.save(eq(thumbnail2)))
+        when(thumbnailBatchWriterMock.save(eq(thumbnail2)))
                 .thenReturn(Mono.just(thumbnail2));
 
         // Then
@@ -101,8 +127,138 @@ class ThumbnailServiceTest {
                 .verifyComplete();
 
         verify(thumbnailConverterMock, times(2)).generateAllThumbnails(any(Image.class));
-        verify(thumbnailRepositoryMock, times(1)).save(eq(thumbnail1));
-        verify(thumbnailRepositoryMock, times(1)).save(eq(thumbnail2));
+        verify(thumbnailBatchWriterMock, times(1)).save(eq(thumbnail1));
+        verify(thumbnailBatchWriterMock, times(1)).save(eq(thumbnail2));
+    }
+
+    /**
+     * Tests if images without a placeholder get one encoded from their stored SMALL thumbnail.
+     */
+    @Test
+    void shouldGenerateMissingPlaceholdersFromSmallThumbnail() {
+        // Given
+        byte[] smallData = new byte[]{1, 2, 3};
+        Thumbnail small = new Thumbnail(smallData, 5L, SMALL);
+
+        when(renderSchedulerMock.getThreads()).thenReturn(2);
+        when(imageService.findIdsWithoutPlaceholder(eq(0L), anyInt())).thenReturn(Flux.just(5L));
+        when(imageService.findIdsWithoutPlaceholder(eq(5L), anyInt())).thenReturn(Flux.empty());
+        when(thumbnailRepositoryMock.findByImageIdAndType(5L, SMALL)).thenReturn(Mono.just(small));
+        when(thumbnailConverterMock.generatePlaceholder(smallData)).thenReturn(Mono.just("LKO2?U%2Tw=w]~RBVZRi};RPxuwH"));
+        when(imageService.updatePlaceholder(5L, "LKO2?U%2Tw=w]~RBVZRi};RPxuwH")).thenReturn(Mono.just(true));
+
+        // When
+        var result = thumbnailService.generateMissingPlaceholders();
+
+        // Then
+        StepVerifier.create(result)
+                .verifyComplete();
+
+        verify(imageService, times(1)).updatePlaceholder(5L, "LKO2?U%2Tw=w]~RBVZRi};RPxuwH");
+    }
+
+    /**
+     * Tests if the backfill checkpoint is advanced to the last image of a batch once that batch is rendered.
+     */
+    @Test
+    void shouldSaveBackfillCheckpointAfterEachBatch() {
+        // Given
+        ReflectionTestUtils.setField(thumbnailService, "backfillBatchSize", 2);
+        when(renderSchedulerMock.getThreads()).thenReturn(2);
+        when(thumbnailRepositoryMock.findBackfillCheckpoint(BACKFILL_CHECKPOINT)).thenReturn(Mono.empty());
+        when(thumbnailRepositoryMock.findMissingThumbnails(eq(0L), any(), eq(2))).thenReturn(Flux.just(missingSmall(1L), missingSmall(2L)));
+        when(thumbnailRepositoryMock.findMissingThumbnails(eq(2L), any(), eq(2))).thenReturn(Flux.just(missingSmall(3L)));
+        when(thumbnailRepositoryMock.findMissingThumbnails(eq(3L), any(), eq(2))).thenReturn(Flux.empty());
+        when(thumbnailRepositoryMock.saveBackfillCheckpoint(eq(BACKFILL_CHECKPOINT), anyLong())).thenReturn(Mono.just(1));
+        when(thumbnailRepositoryMock.deleteBackfillCheckpoint(BACKFILL_CHECKPOINT)).thenReturn(Mono.just(1));
+        stubRendering(1L, 2L, 3L);
+
+        // When
+        var result = thumbnailService.generateMissingThumbnails();
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextCount(3)
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(thumbnailBatchWriterMock, thumbnailRepositoryMock);
+        inOrder.verify(thumbnailBatchWriterMock, times(2)).save(any(Thumbnail.class));
+        inOrder.verify(thumbnailRepositoryMock).saveBackfillCheckpoint(BACKFILL_CHECKPOINT, 2L);
+        inOrder.verify(thumbnailBatchWriterMock).save(any(Thumbnail.class));
+        inOrder.verify(thumbnailRepositoryMock).saveBackfillCheckpoint(BACKFILL_CHECKPOINT, 3L);
+    }
+
+    /**
+     * Tests if a restarted backfill continues after the image stored in its checkpoint.
+     */
+    @Test
+    void shouldResumeBackfillFromCheckpoint() {
+        // Given
+        ReflectionTestUtils.setField(thumbnailService, "backfillBatchSize", 2);
+        when(renderSchedulerMock.getThreads()).thenReturn(2);
+        when(thumbnailRepositoryMock.findBackfillCheckpoint(BACKFILL_CHECKPOINT)).thenReturn(Mono.just(2L));
+        when(thumbnailRepositoryMock.findMissingThumbnails(eq(2L), any(), eq(2))).thenReturn(Flux.just(missingSmall(3L)));
+        when(thumbnailRepositoryMock.findMissingThumbnails(eq(3L), any(), eq(2))).thenReturn(Flux.empty());
+        when(thumbnailRepositoryMock.saveBackfillCheckpoint(BACKFILL_CHECKPOINT, 3L)).thenReturn(Mono.just(1));
+        when(thumbnailRepositoryMock.deleteBackfillCheckpoint(BACKFILL_CHECKPOINT)).thenReturn(Mono.just(1));
+        stubRendering(3L);
+
+        // When
+        var result = thumbnailService.generateMissingThumbnails();
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(rendered -> rendered.getT1().getId() == 3L)
+                .verifyComplete();
+
+        verify(thumbnailRepositoryMock, never()).findMissingThumbnails(eq(0L), any(), anyInt());
+        verify(imageService, never()).findById(1L);
+        verify(imageService, never()).findById(2L);
+    }
+
+    /**
+     * Tests if the backfill checkpoint is deleted once no image is missing thumbnails, so the next run starts over.
+     */
+    @Test
+    void shouldDeleteBackfillCheckpointOnCompletion() {
+        // Given
+        ReflectionTestUtils.setField(thumbnailService, "backfillBatchSize", 2);
+        when(thumbnailRepositoryMock.findBackfillCheckpoint(BACKFILL_CHECKPOINT)).thenReturn(Mono.just(3L));
+        when(thumbnailRepositoryMock.findMissingThumbnails(eq(3L), any(), eq(2))).thenReturn(Flux.empty());
+        when(thumbnailRepositoryMock.deleteBackfillCheckpoint(BACKFILL_CHECKPOINT)).thenReturn(Mono.just(1));
+
+        // When
+        var result = thumbnailService.generateMissingThumbnails();
+
+        // Then
+        StepVerifier.create(result)
+                .verifyComplete();
+
+        verify(thumbnailRepositoryMock).deleteBackfillCheckpoint(BACKFILL_CHECKPOINT);
+        verify(thumbnailRepositoryMock, never()).saveBackfillCheckpoint(anyString(), anyLong());
+    }
+
+    /**
+     * Tests if the volume entry of every thumbnail returned by a folder tree deletion is removed under its own type.
+     */
+    @Test
+    void shouldRemoveVolumeEntriesOfDeletedFolderTree() {
+        // Given
+        FolderTreeDeletion deletion = new FolderTreeDeletion(new Long[]{1L, 2L}, 2L,
+                new Long[]{10L, 11L, 12L}, new String[]{"SMALL", "MEDIUM", "BIG"});
+        when(thumbnailVolumeStoreMock.delete(any(), any())).thenReturn(Mono.empty());
+
+        // When
+        var result = thumbnailService.removeThumbnailData(deletion);
+
+        // Then
+        StepVerifier.create(result)
+                .verifyComplete();
+
+        verify(thumbnailVolumeStoreMock).delete(SMALL, 10L);
+        verify(thumbnailVolumeStoreMock).delete(ThumbnailType.MEDIUM, 11L);
+        verify(thumbnailVolumeStoreMock).delete(ThumbnailType.BIG, 12L);
+        verifyNoMoreInteractions(thumbnailVolumeStoreMock);
     }
 
     /**
@@ -115,15 +271,15 @@ class ThumbnailServiceTest {
         Thumbnail thumbnail2 = new Thumbnail(new byte[]{4, 5, 6}, 2L, ThumbnailType.SMALL);
 
         // When
-        when(thumbnailRepositoryMock.findByType(eq(ThumbnailType.SMALL)))
+        when(thumbnailRepositoryMock.findByTypeAndFolderPaginated(SMALL, 35, 0, 0))
                 .thenReturn(Flux.just(thumbnail1, thumbnail2));
 
         // Then
-        StepVerifier.create(thumbnailService.findAllThumbnailsByTypeAndFolder(SMALL, PageRequest.of(0, 35), 0L))
+        StepVerifier.create(thumbnailService.findAllThumbnailsByTypeAndFolder(SMALL, PageRequest.of(1, 35), 0L))
                 .expectNext(thumbnail1, thumbnail2)
                 .verifyComplete();
 
-        verify(thumbnailRepositoryMock, times(1)).findByType(eq(ThumbnailType.SMALL));
+        verify(thumbnailRepositoryMock, times(1)).findByTypeAndFolderPaginated(SMALL, 35, 0, 0);
     }
 
     /**
@@ -132,15 +288,15 @@ class ThumbnailServiceTest {
     @Test
     void shouldReturnEmptyWhenNoThumbnails() {
         // When
-        when(thumbnailRepositoryMock.findByType(eq(ThumbnailType.SMALL)))
+        when(thumbnailRepositoryMock.findByTypeAndFolderPaginated(SMALL, 35, 0, 0))
                 .thenReturn(Flux.empty());
 
         // Then
-        StepVerifier.create(thumbnailService.findAllThumbnailsByTypeAndFolder(SMALL, PageRequest.of(0, 35), 0L))
+        StepVerifier.create(thumbnailService.findAllThumbnailsByTypeAndFolder(SMALL, PageRequest.of(1, 35), 0L))
                 .expectNextCount(0)
                 .verifyComplete();
 
-        verify(thumbnailRepositoryMock).findByType(eq(ThumbnailType.SMALL));
+        verify(thumbnailRepositoryMock).findByTypeAndFolderPaginated(SMALL, 35, 0, 0);
     }
 
     /**
@@ -182,4 +338,21 @@ class ThumbnailServiceTest {
         verify(thumbnailRepositoryMock).findById(1L);
         verifyNoInteractions(imageService);
     }
+
+    private static MissingThumbnails missingSmall(Long imageId) {
+        return new MissingThumbnails(imageId, new String[]{SMALL.name()});
+    }
+
+    private void stubRendering(Long... imageIds) {
+        for (Long imageId : imageIds) {
+            Image image = new Image(new byte[]{1, 2, 3}, imageId);
+            when(imageService.findById(imageId)).thenReturn(Mono.just(image));
+            when(thumbnailConverterMock.generateThumbnailSet(image, EnumSet.of(SMALL)))
+                    .thenReturn(Mono.just(List.of(new Thumbnail(new byte[]{4, 5, 6}, SMALL))));
+        }
+        when(blobStoreMock.put(any())).thenReturn(Mono.just("hash"));
+        when(thumbnailBatchWriterMock.save(any(Thumbnail.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(thumbnailVolumeStoreMock.write(any(), any(), any())).thenReturn(Mono.empty());
+    }
 }
@@ -0,0 +1,46 @@
+package agh.project.oot.thumbnails;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlurHashEncoderTest {
+
+    /**
+     * Tests if a uniformly black image encodes to the reference BlurHash with zeroed AC components.
+     */
+    @Test
+    void shouldEncodeSolidImage() {
+        // Given
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+
+        // When
+        String hash = BlurHashEncoder.encode(image, 4, 3);
+
+        // Then
+        assertEquals("L00000fQfQfQfQfQfQfQfQfQfQfQ", hash, "Solid black image should encode to the reference hash");
+    }
+
+    /**
+     * Tests if the hash length follows the component count so it fits the placeholder column.
+     */
+    @Test
+    void shouldEncodeHashOfExpectedLength() {
+        // Given
+        BufferedImage image = new BufferedImage(150, 100, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x < image.getWidth() / 2 ? 0xFF0000 : 0x0000FF);
+            }
+        }
+
+        // When
+        String hash = BlurHashEncoder.encode(image, 4, 3);
+
+        // Then
+        assertEquals(1 + 1 + 4 + 2 * (4 * 3 - 1), hash.length(), "Hash length should match the component count");
+        assertNotEquals("L00000fQfQfQfQfQfQfQfQfQfQfQ", hash, "Non-uniform image should produce AC components");
+    }
+}
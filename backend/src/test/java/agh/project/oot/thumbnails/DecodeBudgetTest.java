@@ -0,0 +1,79 @@
+package agh.project.oot.thumbnails;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecodeBudgetTest {
+
+    /**
+     * Tests if reserved bytes are counted while a reservation is open and returned when it is closed.
+     */
+    @Test
+    void shouldReserveAndReleaseBytes() throws IOException {
+        // Given
+        DecodeBudget decodeBudget = new DecodeBudget(100, new SimpleMeterRegistry());
+
+        // When
+        DecodeBudget.Reservation first = decodeBudget.reserve(30);
+        DecodeBudget.Reservation second = decodeBudget.reserve(50);
+        long reservedWhileOpen = decodeBudget.getReservedBytes();
+        first.close();
+        second.close();
+        second.close();
+
+        // Then
+        assertEquals(80, reservedWhileOpen, "Both reservations should be counted while open");
+        assertEquals(0, decodeBudget.getReservedBytes(), "Closing should release the bytes exactly once");
+        assertEquals(80, decodeBudget.getPeakReservedBytes(), "Peak should keep the highest reservation");
+    }
+
+    /**
+     * Tests if a reservation that does not fit waits until enough bytes are released.
+     */
+    @Test
+    void shouldBlockUntilBudgetIsReleased() throws Exception {
+        // Given
+        DecodeBudget decodeBudget = new DecodeBudget(100, new SimpleMeterRegistry());
+        DecodeBudget.Reservation held = decodeBudget.reserve(70);
+
+        // When
+        CompletableFuture<DecodeBudget.Reservation> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return decodeBudget.reserve(50);
+            } catch (IOException error) {
+                throw new IllegalStateException(error);
+            }
+        });
+        Thread.sleep(100);
+        boolean completedWhileHeld = waiting.isDone();
+        held.close();
+        DecodeBudget.Reservation acquired = waiting.get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertFalse(completedWhileHeld, "Reservation should wait while the budget is exhausted");
+        assertEquals(50, decodeBudget.getReservedBytes(), "Waiting reservation should be granted after release");
+        acquired.close();
+    }
+
+    /**
+     * Tests if a request larger than the whole budget is rejected instead of waiting forever.
+     */
+    @Test
+    void shouldRejectReservationLargerThanBudget() {
+        // Given
+        DecodeBudget decodeBudget = new DecodeBudget(100, new SimpleMeterRegistry());
+
+        // When
+        IOException error = assertThrows(IOException.class, () -> decodeBudget.reserve(101));
+
+        // Then
+        assertTrue(error.getMessage().contains("exceeds the decode budget"), "Error should explain the rejection");
+        assertEquals(0, decodeBudget.getReservedBytes(), "Rejected reservation should not reserve any bytes");
+    }
+}
@@ -0,0 +1,97 @@
+package agh.project.oot.thumbnails;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageValidatorTest {
+
+    /**
+     * Tests if a well-formed image with a known signature is accepted.
+     */
+    @Test
+    void shouldAcceptValidImage() throws IOException {
+        // Given
+        ImageValidator imageValidator = createImageValidator(64 * 1024 * 1024);
+
+        // When
+        boolean result = imageValidator.isSupported(createPng(200, 100));
+
+        // Then
+        assertTrue(result, "Valid PNG should be accepted");
+    }
+
+    /**
+     * Tests if files that do not start with a known image signature are rejected before decoding.
+     */
+    @Test
+    void shouldRejectUnknownSignature() {
+        // Given
+        ImageValidator imageValidator = createImageValidator(64 * 1024 * 1024);
+
+        // When
+        boolean text = imageValidator.isSupported("not an image".getBytes(StandardCharsets.UTF_8));
+        boolean empty = imageValidator.isSupported(new byte[0]);
+        boolean missing = imageValidator.isSupported(null);
+
+        // Then
+        assertFalse(text, "Text file should be rejected");
+        assertFalse(empty, "Empty file should be rejected");
+        assertFalse(missing, "Missing data should be rejected");
+    }
+
+    /**
+     * Tests if a file with a valid signature but a broken header is rejected.
+     */
+    @Test
+    void shouldRejectUnreadableHeader() throws IOException {
+        // Given
+        ImageValidator imageValidator = createImageValidator(64 * 1024 * 1024);
+        byte[] truncated = Arrays.copyOf(createPng(200, 100), 12);
+
+        // When
+        boolean result = imageValidator.isSupported(truncated);
+
+        // Then
+        assertFalse(result, "PNG with a truncated header should be rejected");
+    }
+
+    /**
+     * Tests if an image that would not fit in the decode budget is rejected.
+     */
+    @Test
+    void shouldRejectImageExceedingDecodeBudget() throws IOException {
+        // Given
+        ImageValidator imageValidator = createImageValidator(1024);
+
+        // When
+        boolean result = imageValidator.isSupported(createPng(200, 100));
+
+        // Then
+        assertFalse(result, "Image larger than the decode budget should be rejected");
+    }
+
+    private ImageValidator createImageValidator(long decodeBudgetBytes) {
+        ImageValidator imageValidator = new ImageValidator(new ImageDecoder(),
+                new DecodeBudget(decodeBudgetBytes, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(imageValidator, "thumbnailWidth", 150);
+        ReflectionTestUtils.setField(imageValidator, "thumbnailHeight", 150);
+        ReflectionTestUtils.setField(imageValidator, "bigThumbnailScale", 4);
+        return imageValidator;
+    }
+
+    private byte[] createPng(int width, int height) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
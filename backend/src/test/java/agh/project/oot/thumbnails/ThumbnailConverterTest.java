@@ -2,15 +2,27 @@ package agh.project.oot.thumbnails;
 
 import agh.project.oot.model.Image;
 import agh.project.oot.model.Thumbnail;
+import agh.project.oot.thumbnails.engine.ThumbnailatorEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Mono;
 
 import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 
+import static agh.project.oot.model.ThumbnailType.BIG;
+import static agh.project.oot.model.ThumbnailType.MEDIUM;
 import static agh.project.oot.model.ThumbnailType.SMALL;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,7 +37,7 @@ class ThumbnailConverterTest {
         // Given
         int width = 150;
         int height = 150;
-        ThumbnailConverter thumbnailConverter = new ThumbnailConverter();
+        ThumbnailConverter thumbnailConverter = createThumbnailConverter();
 
         byte[] inputData = createFakeImageData();
         Image inputImage = new Image(inputData);
@@ -40,6 +52,156 @@ class ThumbnailConverterTest {
         assertIsValidThumbnail(result.getData(), width, height);
     }
 
+    /**
+     * Tests if ThumbnailConverter renders all thumbnail sizes from a single decoded original.
+     */
+    @Test
+    void shouldGenerateAllThumbnailSizes() throws IOException {
+        // Given
+        ThumbnailConverter thumbnailConverter = createThumbnailConverter();
+        ReflectionTestUtils.setField(thumbnailConverter, "thumbnailWidth", 50);
+        ReflectionTestUtils.setField(thumbnailConverter, "thumbnailHeight", 50);
+        ReflectionTestUtils.setField(thumbnailConverter, "mediumThumbnailScale", 2);
+        ReflectionTestUtils.setField(thumbnailConverter, "bigThumbnailScale", 4);
+
+        Image inputImage = new Image(createFakeImageData());
+
+        // When
+        List<Thumbnail> result = thumbnailConverter.generateThumbnailSet(inputImage).block();
+
+        // Then
+        assertNotNull(result, "Generated thumbnails should not be null");
+        assertEquals(3, result.size(), "All thumbnail sizes should be generated");
+        assertEquals(List.of(SMALL, MEDIUM, BIG), result.stream().map(Thumbnail::getType).toList());
+        assertIsValidThumbnail(result.get(0).getData(), 50, 50);
+        assertIsValidThumbnail(result.get(1).getData(), 100, 100);
+        assertIsValidThumbnail(result.get(2).getData(), 200, 200);
+    }
+
+    /**
+     * Tests if an embedded EXIF thumbnail large enough for SMALL is used instead of decoding the original.
+     */
+    @Test
+    void shouldUseEmbeddedThumbnailWhenLargeEnough() throws IOException {
+        // Given
+        ThumbnailConverter thumbnailConverter = createThumbnailConverter();
+        Image inputImage = new Image(withExifThumbnail(createJpeg(600, 400, Color.BLUE), createJpeg(240, 160, Color.RED)));
+
+        // When
+        List<Thumbnail> result = thumbnailConverter.generateAllThumbnails(inputImage).collectList().block();
+
+        // Then
+        assertNotNull(result, "Generated thumbnails should not be null");
+        assertEquals(List.of(SMALL, MEDIUM, BIG), result.stream().map(Thumbnail::getType).toList());
+        assertEquals(Color.RED, dominantColor(result.get(0).getData()), "SMALL should be rendered from the embedded thumbnail");
+        assertEquals(Color.BLUE, dominantColor(result.get(1).getData()), "MEDIUM should be rendered from the original");
+        assertNotNull(inputImage.getPlaceholder(), "Placeholder should be encoded from the embedded thumbnail");
+    }
+
+    /**
+     * Tests if an embedded EXIF thumbnail smaller than SMALL is ignored and the original is decoded.
+     */
+    @Test
+    void shouldFallBackWhenEmbeddedThumbnailTooSmall() throws IOException {
+        // Given
+        ThumbnailConverter thumbnailConverter = createThumbnailConverter();
+        Image inputImage = new Image(withExifThumbnail(createJpeg(600, 400, Color.BLUE), createJpeg(120, 80, Color.RED)));
+
+        // When
+        List<Thumbnail> result = thumbnailConverter.generateAllThumbnails(inputImage).collectList().block();
+
+        // Then
+        assertNotNull(result, "Generated thumbnails should not be null");
+        assertEquals(List.of(SMALL, MEDIUM, BIG), result.stream().map(Thumbnail::getType).toList());
+        assertEquals(Color.BLUE, dominantColor(result.get(0).getData()), "SMALL should be rendered from the original");
+    }
+
+    /**
+     * Tests if a JPEG without an embedded EXIF thumbnail gets all sizes rendered from the original.
+     */
+    @Test
+    void shouldFallBackWhenEmbeddedThumbnailAbsent() throws IOException {
+        // Given
+        ThumbnailConverter thumbnailConverter = createThumbnailConverter();
+        Image inputImage = new Image(createJpeg(600, 400, Color.BLUE));
+
+        // When
+        List<Thumbnail> result = thumbnailConverter.generateAllThumbnails(inputImage).collectList().block();
+
+        // Then
+        assertNotNull(result, "Generated thumbnails should not be null");
+        assertEquals(List.of(SMALL, MEDIUM, BIG), result.stream().map(Thumbnail::getType).toList());
+        assertEquals(Color.BLUE, dominantColor(result.get(0).getData()), "SMALL should be rendered from the original");
+        assertIsValidThumbnail(result.get(0).getData(), 150, 100);
+    }
+
+    private ThumbnailConverter createThumbnailConverter() {
+        ImageDecoder imageDecoder = new ImageDecoder();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ThumbnailConverter thumbnailConverter = new ThumbnailConverter(
+                new ThumbnailatorEngine(imageDecoder),
+                imageDecoder,
+                new DecodeBudget(64 * 1024 * 1024, meterRegistry),
+                new ThumbnailRenderScheduler(1, 4, meterRegistry),
+                new ExifThumbnailExtractor(imageDecoder),
+                new ThumbnailEncoder(Map.of(), Map.of(), Map.of(), 0, meterRegistry));
+        ReflectionTestUtils.setField(thumbnailConverter, "thumbnailWidth", 150);
+        ReflectionTestUtils.setField(thumbnailConverter, "thumbnailHeight", 150);
+        ReflectionTestUtils.setField(thumbnailConverter, "mediumThumbnailScale", 2);
+        ReflectionTestUtils.setField(thumbnailConverter, "bigThumbnailScale", 4);
+        return thumbnailConverter;
+    }
+
+    private byte[] createJpeg(int width, int height, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Replaces the JFIF APP0 segment with an EXIF APP1 segment whose IFD1 points at the given JPEG thumbnail,
+     * the layout cameras write.
+     */
+    private byte[] withExifThumbnail(byte[] jpeg, byte[] thumbnail) {
+        int ifd0Offset = 8;
+        int ifd1Offset = ifd0Offset + 2 + 12 + 4;
+        int thumbnailOffset = ifd1Offset + 2 + 2 * 12 + 4;
+
+        ByteBuffer tiff = ByteBuffer.allocate(thumbnailOffset + thumbnail.length).order(ByteOrder.BIG_ENDIAN);
+        tiff.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(ifd0Offset);
+        // IFD0: orientation, then the offset of IFD1
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) 1).putShort((short) 0);
+        tiff.putInt(ifd1Offset);
+        // IFD1: JPEGInterchangeFormat and JPEGInterchangeFormatLength
+        tiff.putShort((short) 2);
+        tiff.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(thumbnailOffset);
+        tiff.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(thumbnail.length);
+        tiff.putInt(0);
+        tiff.put(thumbnail);
+
+        int app0End = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        byte[] exifHeader = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer result = ByteBuffer.allocate(jpeg.length - app0End + 6 + exifHeader.length + tiff.capacity());
+        result.put(jpeg, 0, 2);
+        result.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + exifHeader.length + tiff.capacity()));
+        result.put(exifHeader).put(tiff.array());
+        result.put(jpeg, app0End, jpeg.length - app0End);
+        return result.array();
+    }
+
+    private Color dominantColor(byte[] thumbnailData) throws IOException {
+        BufferedImage thumbnailImage = ImageIO.read(new ByteArrayInputStream(thumbnailData));
+        Color center = new Color(thumbnailImage.getRGB(thumbnailImage.getWidth() / 2, thumbnailImage.getHeight() / 2));
+        return center.getRed() > center.getBlue() ? Color.RED : Color.BLUE;
+    }
+
     private void assertIsValidThumbnail(byte[] thumbnailData, int expectedWidth, int expectedHeight) throws IOException {
         ByteArrayInputStream thumbnailStream = new ByteArrayInputStream(thumbnailData);
         BufferedImage thumbnailImage = ImageIO.read(thumbnailStream);
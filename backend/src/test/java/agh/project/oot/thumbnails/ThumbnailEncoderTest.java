@@ -0,0 +1,99 @@
+package agh.project.oot.thumbnails;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static agh.project.oot.model.ThumbnailType.BIG;
+import static agh.project.oot.model.ThumbnailType.SMALL;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailEncoderTest {
+    // signature (8) + IHDR length (4) + "IHDR" (4) + width, height, bit depth, colour type, compression, filter (12)
+    private static final int PNG_INTERLACE_METHOD_OFFSET = 28;
+
+    /**
+     * Tests if images with an alpha channel fall back to a lossless format even when a lossy one is configured.
+     */
+    @Test
+    void shouldFallBackToLosslessFormatForAlphaImages() {
+        // Given
+        ThumbnailEncoder thumbnailEncoder = createThumbnailEncoder(Map.of("SMALL", "jpeg"));
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+        // When
+        String formatName = thumbnailEncoder.resolveFormat(image, "png", SMALL);
+
+        // Then
+        assertEquals("png", formatName, "Alpha image should be encoded losslessly");
+    }
+
+    /**
+     * Tests if the configured format is used for opaque images and the source format when none is configured.
+     */
+    @Test
+    void shouldUseConfiguredFormatPerType() {
+        // Given
+        ThumbnailEncoder thumbnailEncoder = createThumbnailEncoder(Map.of("SMALL", "jpeg"));
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+
+        // When
+        String smallFormat = thumbnailEncoder.resolveFormat(image, "png", SMALL);
+        String bigFormat = thumbnailEncoder.resolveFormat(image, "png", BIG);
+
+        // Then
+        assertEquals("jpeg", smallFormat, "Configured format should be used for SMALL");
+        assertEquals("png", bigFormat, "Source format should be kept when no format is configured");
+    }
+
+    /**
+     * Tests if the alpha fallback to PNG ignores the progressive flag and writes a non-interlaced image.
+     */
+    @Test
+    void shouldNotInterlacePngFallback() throws IOException {
+        // Given
+        ThumbnailEncoder thumbnailEncoder = new ThumbnailEncoder(Map.of("BIG", "jpeg"), Map.of(), Map.of("BIG", true), 0,
+                new SimpleMeterRegistry());
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+        // When
+        byte[] data = thumbnailEncoder.encode(image, "png", BIG);
+
+        // Then
+        assertEquals("PNG", new String(data, 1, 3, StandardCharsets.US_ASCII), "Alpha image should be encoded as PNG");
+        assertEquals(0, data[PNG_INTERLACE_METHOD_OFFSET], "PNG should not be interlaced");
+    }
+
+    /**
+     * Tests if an image with an alpha channel but only opaque pixels is encoded with the configured lossy format.
+     */
+    @Test
+    void shouldUseLossyFormatForOpaqueAlphaImages() throws IOException {
+        // Given
+        ThumbnailEncoder thumbnailEncoder = createThumbnailEncoder(Map.of("BIG", "jpeg"));
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 10, 10);
+        graphics.dispose();
+
+        // When
+        String formatName = thumbnailEncoder.resolveFormat(image, "png", BIG);
+        byte[] data = thumbnailEncoder.encode(image, "png", BIG);
+
+        // Then
+        assertEquals("jpeg", formatName, "Opaque image should not fall back to a lossless format");
+        assertEquals((byte) 0xFF, data[0], "Opaque image should be encoded as JPEG");
+        assertEquals((byte) 0xD8, data[1], "Opaque image should be encoded as JPEG");
+    }
+
+    private ThumbnailEncoder createThumbnailEncoder(Map<String, String> outputFormats) {
+        return new ThumbnailEncoder(outputFormats, Map.of(), Map.of(), 0, new SimpleMeterRegistry());
+    }
+}
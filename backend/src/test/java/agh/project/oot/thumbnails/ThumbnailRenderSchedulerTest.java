@@ -0,0 +1,38 @@
+package agh.project.oot.thumbnails;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailRenderSchedulerTest {
+
+    /**
+     * Tests if tasks rejected by a full render queue are retried instead of failing.
+     */
+    @Test
+    void shouldRetryTasksRejectedByFullQueue() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ThumbnailRenderScheduler renderScheduler = new ThumbnailRenderScheduler(1, 1, meterRegistry);
+
+        // When
+        List<Integer> result = Flux.range(0, 10)
+                .flatMap(task -> renderScheduler.render(() -> {
+                    Thread.sleep(20);
+                    return task;
+                }))
+                .collectList()
+                .block();
+        renderScheduler.destroy();
+
+        // Then
+        assertNotNull(result, "Rendered results should not be null");
+        assertEquals(10, result.size(), "Every task should be rendered");
+        assertTrue(meterRegistry.get("thumbnail-render.rejected").counter().count() > 0,
+                "Some tasks should have been rejected by the full queue");
+    }
+}
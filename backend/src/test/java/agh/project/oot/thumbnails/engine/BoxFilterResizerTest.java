@@ -0,0 +1,78 @@
+package agh.project.oot.thumbnails.engine;
+
+import net.coobird.thumbnailator.Thumbnails;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoxFilterResizerTest {
+    private static final double MIN_PSNR = 30.0;
+
+    /**
+     * Tests if the scalar box filter stays within the PSNR threshold of the Thumbnailator output.
+     */
+    @Test
+    void shouldMatchThumbnailatorWithScalarKernel() throws IOException {
+        // Given
+        BufferedImage source = createGradientImage(1600, 1200);
+        BufferedImage expected = Thumbnails.of(source).size(300, 300).asBufferedImage();
+
+        // When
+        BufferedImage result = BoxFilterResizer.scalar().resize(source, 300, 300);
+
+        // Then
+        assertEquals(expected.getWidth(), result.getWidth(), "Width should match the Thumbnailator output");
+        assertEquals(expected.getHeight(), result.getHeight(), "Height should match the Thumbnailator output");
+        assertTrue(psnr(expected, result) >= MIN_PSNR, "Scalar kernel output should be close to Thumbnailator output");
+    }
+
+    /**
+     * Tests if the kernel selected for the running JVM (vector or scalar fallback) matches the scalar kernel.
+     */
+    @Test
+    void shouldMatchScalarKernelWithSelectedKernel() {
+        // Given
+        BufferedImage source = createGradientImage(1023, 767);
+
+        // When
+        BufferedImage scalar = BoxFilterResizer.scalar().resize(source, 150, 150);
+        BufferedImage selected = BoxFilterResizer.create().resize(source, 150, 150);
+
+        // Then
+        assertTrue(psnr(scalar, selected) >= 50.0, "Selected kernel output should match the scalar kernel");
+    }
+
+    private static BufferedImage createGradientImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (int) (127 + 127 * Math.sin(x / 60.0));
+                int green = (int) (127 + 127 * Math.cos(y / 45.0));
+                int blue = (x + y) % 256 / 2 + 64;
+                image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+            }
+        }
+        return image;
+    }
+
+    private static double psnr(BufferedImage expected, BufferedImage actual) {
+        double squaredError = 0;
+        long samples = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int expectedPixel = expected.getRGB(x, y);
+                int actualPixel = actual.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int difference = ((expectedPixel >> shift) & 0xFF) - ((actualPixel >> shift) & 0xFF);
+                    squaredError += difference * difference;
+                    samples++;
+                }
+            }
+        }
+        double meanSquaredError = squaredError / samples;
+        return meanSquaredError == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / meanSquaredError);
+    }
+}
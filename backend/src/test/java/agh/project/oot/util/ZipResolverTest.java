@@ -0,0 +1,75 @@
+package agh.project.oot.util;
+
+import agh.project.oot.service.FolderService;
+import agh.project.oot.thumbnails.ImageValidator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ZipResolverTest {
+
+    @Mock
+    private FolderService folderService;
+
+    @Mock
+    private ImageValidator imageValidator;
+
+    @InjectMocks
+    private ZipResolver zipResolver;
+
+    /**
+     * Tests if rejected zip entries are reported to the handler and skipped while valid ones are emitted.
+     */
+    @Test
+    void shouldReportRejectedEntriesAndEmitValidImages() throws IOException {
+        // Given
+        byte[] imageData = new byte[]{1, 2, 3};
+        byte[] textData = new byte[]{4, 5, 6};
+        ZipInputStream zip = createZip(List.of("photos/image.png", "notes.txt"), List.of(imageData, textData));
+        List<String> rejected = new ArrayList<>();
+
+        when(imageValidator.isSupported(imageData)).thenReturn(true);
+        when(imageValidator.isSupported(textData)).thenReturn(false);
+        when(folderService.createFolderIfNotExists("photos", 0L)).thenReturn(Mono.just(7L));
+
+        // When
+        var result = zipResolver.processZipEntries(zip, rejected::add);
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextMatches(image -> image.getFolderId() == 7L && Arrays.equals(image.getData(), imageData))
+                .verifyComplete();
+        assertEquals(List.of("notes.txt"), rejected, "Only the unsupported entry should be reported");
+        verify(folderService, times(1)).createFolderIfNotExists("photos", 0L);
+    }
+
+    private ZipInputStream createZip(List<String> names, List<byte[]> contents) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(outputStream)) {
+            for (int i = 0; i < names.size(); i++) {
+                zip.putNextEntry(new ZipEntry(names.get(i)));
+                zip.write(contents.get(i));
+                zip.closeEntry();
+            }
+        }
+        return new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+}